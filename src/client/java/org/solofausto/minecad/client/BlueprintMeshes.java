@@ -0,0 +1,205 @@
+package org.solofausto.minecad.client;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import org.solofausto.minecad.Minecad;
+import org.solofausto.minecad.blueprint.BlueprintOrigin;
+import org.solofausto.minecad.blueprint.BlueprintRegion;
+import org.solofausto.minecad.blueprint.BlueprintRegionMap;
+import org.solofausto.minecad.blueprint.BlueprintSession;
+import org.solofausto.minecad.blueprint.PackedBlocks;
+
+final class BlueprintMeshes {
+    static final float POINT_ALPHA = 0.75f;
+    static final float LINE_ALPHA = 0.65f;
+    static final float REGION_ALPHA = 0.85f;
+    private static final int POINT_COLOR = SketchMesh.argb(Math.round(255 * POINT_ALPHA), 0, 120, 255);
+    private static final int LINE_COLOR = SketchMesh.argb(Math.round(255 * LINE_ALPHA), 0, 255, 0);
+    private static final int REGION_COLOR = SketchMesh.argb(Math.round(255 * REGION_ALPHA), 255, 215, 0);
+
+    private static final ExecutorService BUILDER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Minecad Mesh Builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Map<BlueprintSession, BlueprintMeshes> MESHES = new WeakHashMap<>();
+
+    private final double inset;
+    private Meshes current;
+    private Key pendingKey;
+    private Key failedKey;
+    private CompletableFuture<Meshes> pending;
+    private BlueprintRegionMap regions = BlueprintRegionMap.EMPTY;
+    private long regionsVersion = -1;
+    private long pendingRegionsVersion;
+    private CompletableFuture<BlueprintRegionMap> pendingRegions;
+    private BlueprintRegion regionSource;
+    private SketchMesh regionMesh;
+    private BlueprintRegion pendingRegionSource;
+    private CompletableFuture<SketchMesh> pendingRegion;
+
+    private BlueprintMeshes(double inset) {
+        this.inset = inset;
+    }
+
+    static BlueprintMeshes of(BlueprintSession session, double inset) {
+        // Values must not reference their session, or the weak keys are never cleared.
+        return MESHES.computeIfAbsent(session, key -> new BlueprintMeshes(inset));
+    }
+
+    Meshes update(BlueprintSession session, RenderWindow window) {
+        if (pending != null && pending.isDone()) {
+            Meshes built = result(pending, "meshes");
+            if (built == null) {
+                failedKey = pendingKey;
+            } else {
+                current = built;
+            }
+            pending = null;
+            pendingKey = null;
+        }
+
+        if (pending == null) {
+            BlueprintSession.GeometrySnapshot snapshot = session.snapshot();
+            Key key = new Key(snapshot.version(), snapshot.origin(), window);
+            if (snapshot.origin() != null && !key.equals(failedKey)
+                    && (current == null || !key.equals(current.key()))) {
+                Meshes previous = current;
+                pendingKey = key;
+                pending = CompletableFuture.supplyAsync(() -> build(snapshot, window, previous), BUILDER);
+            }
+        }
+        return current;
+    }
+
+    // Regions are only detected when a caller asks for them, never as part of a mesh rebuild.
+    BlueprintRegionMap regions(BlueprintSession session, Meshes built) {
+        if (pendingRegions != null && pendingRegions.isDone()) {
+            BlueprintRegionMap detected = result(pendingRegions, "regions");
+            regions = detected == null ? BlueprintRegionMap.EMPTY : detected;
+            regionsVersion = pendingRegionsVersion;
+            pendingRegions = null;
+        }
+
+        if (regionsVersion != built.version() && pendingRegions == null) {
+            BlueprintSession.GeometrySnapshot snapshot = built.snapshot();
+            pendingRegionsVersion = built.version();
+            pendingRegions = CompletableFuture.supplyAsync(() -> session.getCachedRegions(snapshot), BUILDER);
+        }
+        return regionsVersion == built.version() ? regions : BlueprintRegionMap.EMPTY;
+    }
+
+    SketchMesh regionMesh(BlueprintRegion region, BlueprintOrigin origin) {
+        if (pendingRegion != null && pendingRegion.isDone()) {
+            regionSource = pendingRegionSource;
+            regionMesh = result(pendingRegion, "region mesh");
+            pendingRegion = null;
+            pendingRegionSource = null;
+        }
+
+        if (region == regionSource) {
+            return regionMesh;
+        }
+        // A mesh built for another region is never shown for this one.
+        if (pendingRegion == null) {
+            pendingRegionSource = region;
+            pendingRegion = CompletableFuture.supplyAsync(() -> buildRegionMesh(region, origin), BUILDER);
+        }
+        return null;
+    }
+
+    private static <T> T result(CompletableFuture<T> future, String task) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Minecad.LOGGER.error("Failed to build blueprint {}", task, e.getCause());
+            return null;
+        }
+    }
+
+    private Meshes build(BlueprintSession.GeometrySnapshot snapshot, RenderWindow window, Meshes previous) {
+        BlockPos anchor = snapshot.origin().blockPos();
+        SketchMesh points;
+        if (previous != null && previous.version() == snapshot.version()
+                && previous.origin().equals(snapshot.origin())) {
+            points = previous.points();
+        } else {
+            points = new SketchMesh(anchor, inset);
+            PackedBlocks.Cursor pointCursor = snapshot.pointBlocks().cursor();
+            while (pointCursor.next()) {
+                points.addCube(pointCursor.x(), pointCursor.y(), pointCursor.z(), POINT_COLOR);
+            }
+            points.compile();
+        }
+
+        BlockBox box = window == null ? null : window.toBox();
+        SketchMesh lines = new SketchMesh(anchor, inset);
+        for (BlueprintSession.LineBlockCache line : snapshot.lineBlocks()) {
+            PackedBlocks blocks;
+            if (box == null) {
+                blocks = line.blocks();
+            } else if (box.intersects(BlockBox.create(line.start(), line.end()))) {
+                blocks = line.blocksIn(box);
+            } else {
+                continue;
+            }
+            PackedBlocks.Cursor lineCursor = blocks.cursor();
+            while (lineCursor.next()) {
+                lines.addCube(lineCursor.x(), lineCursor.y(), lineCursor.z(), LINE_COLOR);
+            }
+        }
+        lines.compile();
+        return new Meshes(snapshot, window, points, lines);
+    }
+
+    private SketchMesh buildRegionMesh(BlueprintRegion region, BlueprintOrigin origin) {
+        SketchMesh mesh = new SketchMesh(origin.blockPos(), inset);
+        for (BlockPos pos : region.worldBlocks()) {
+            mesh.addCube(pos.getX(), pos.getY(), pos.getZ(), REGION_COLOR);
+        }
+        mesh.compile();
+        return mesh;
+    }
+
+    record Meshes(BlueprintSession.GeometrySnapshot snapshot, RenderWindow window, SketchMesh points,
+            SketchMesh lines) {
+        long version() {
+            return snapshot.version();
+        }
+
+        BlueprintOrigin origin() {
+            return snapshot.origin();
+        }
+
+        Key key() {
+            return new Key(version(), origin(), window);
+        }
+    }
+
+    private record Key(long version, BlueprintOrigin origin, RenderWindow window) {
+    }
+
+    record RenderWindow(int chunkX, int chunkY, int chunkZ, int radius) {
+        static RenderWindow around(Vec3d cameraPos, double maxDistanceSq) {
+            if (Double.isInfinite(maxDistanceSq)) {
+                return null;
+            }
+            int radius = (MathHelper.ceil(Math.sqrt(maxDistanceSq)) >> 4) + 1;
+            return new RenderWindow(MathHelper.floor(cameraPos.x) >> 4, MathHelper.floor(cameraPos.y) >> 4,
+                    MathHelper.floor(cameraPos.z) >> 4, radius);
+        }
+
+        BlockBox toBox() {
+            return new BlockBox((chunkX - radius) << 4, (chunkY - radius) << 4, (chunkZ - radius) << 4,
+                    ((chunkX + radius) << 4) + 15, ((chunkY + radius) << 4) + 15, ((chunkZ + radius) << 4) + 15);
+        }
+    }
+}
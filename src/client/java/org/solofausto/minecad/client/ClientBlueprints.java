@@ -0,0 +1,105 @@
+package org.solofausto.minecad.client;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.item.ItemStack;
+import org.solofausto.minecad.Minecad;
+import org.solofausto.minecad.blueprint.BlueprintData;
+import org.solofausto.minecad.blueprint.BlueprintDeltaPayload;
+import org.solofausto.minecad.blueprint.BlueprintItemData;
+import org.solofausto.minecad.blueprint.BlueprintManager;
+import org.solofausto.minecad.blueprint.BlueprintReference;
+import org.solofausto.minecad.blueprint.BlueprintRequestPayload;
+import org.solofausto.minecad.blueprint.BlueprintSession;
+import org.solofausto.minecad.blueprint.BlueprintSyncPayload;
+
+final class ClientBlueprints {
+    private static final Map<UUID, BlueprintData> BLUEPRINTS = new HashMap<>();
+    private static final Object2IntOpenHashMap<UUID> REQUESTED = new Object2IntOpenHashMap<>();
+    private static final Map<UUID, PartialSync> PARTIAL = new HashMap<>();
+
+    static {
+        REQUESTED.defaultReturnValue(-1);
+    }
+
+    private ClientBlueprints() {
+    }
+
+    static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(BlueprintSyncPayload.ID,
+                (payload, context) -> receive(payload));
+        ClientPlayNetworking.registerGlobalReceiver(BlueprintDeltaPayload.ID, (payload, context) -> {
+            // Deltas against a revision we do not have are dropped; the full blueprint is requested on demand.
+            BlueprintSession session = BlueprintManager.client().get(context.player().getUuid()).orElse(null);
+            BlueprintData data = payload.delta().applyTo(BLUEPRINTS.get(payload.delta().id()), session);
+            if (data != null) {
+                BLUEPRINTS.put(data.id(), data);
+            }
+        });
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            BLUEPRINTS.clear();
+            REQUESTED.clear();
+            PARTIAL.clear();
+            BlueprintManager.client().clearAll();
+        });
+    }
+
+    static boolean load(ItemStack stack, BlueprintSession session) {
+        return BlueprintItemData.load(stack, session, get(stack.get(Minecad.BLUEPRINT_REFERENCE)));
+    }
+
+    private static void receive(BlueprintSyncPayload payload) {
+        if (payload.parts() < 1 || payload.parts() > BlueprintSyncPayload.MAX_PARTS || payload.part() < 0
+                || payload.part() >= payload.parts()) {
+            return;
+        }
+        PartialSync partial = PARTIAL.get(payload.id());
+        if (partial == null || partial.revision() != payload.revision()
+                || partial.parts().length != payload.parts()) {
+            partial = new PartialSync(payload.revision(), new byte[payload.parts()][]);
+            PARTIAL.put(payload.id(), partial);
+        }
+        partial.parts()[payload.part()] = payload.bytes();
+        for (byte[] part : partial.parts()) {
+            if (part == null) {
+                return;
+            }
+        }
+        PARTIAL.remove(payload.id());
+
+        BlueprintData data;
+        try {
+            data = BlueprintData.PACKET_CODEC.decode(Unpooled.wrappedBuffer(partial.parts()));
+        } catch (DecoderException | IndexOutOfBoundsException ex) {
+            return;
+        }
+        BlueprintData known = BLUEPRINTS.get(data.id());
+        if (known == null || known.revision() < data.revision()) {
+            BLUEPRINTS.put(data.id(), data);
+        }
+    }
+
+    private static BlueprintData get(BlueprintReference reference) {
+        if (reference == null) {
+            return null;
+        }
+        // The last received revision keeps drawing until the requested one arrives.
+        BlueprintData data = BLUEPRINTS.get(reference.id());
+        int known = data == null ? -1 : data.revision();
+        if (known < reference.revision() && REQUESTED.getInt(reference.id()) < reference.revision()
+                && ClientPlayNetworking.canSend(BlueprintRequestPayload.ID)) {
+            REQUESTED.put(reference.id(), reference.revision());
+            ClientPlayNetworking.send(new BlueprintRequestPayload(reference.id()));
+        }
+        return data;
+    }
+
+    private record PartialSync(int revision, byte[][] parts) {
+    }
+}
@@ -6,7 +6,7 @@ public class MinecadClient implements ClientModInitializer {
 
     @Override
     public void onInitializeClient() {
-        BlueprintOverlayRenderer.register();
         SketchToolBase.register();
+        ClientBlueprints.register();
     }
 }
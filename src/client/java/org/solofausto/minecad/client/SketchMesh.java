@@ -0,0 +1,333 @@
+package org.solofausto.minecad.client;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.Arrays;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+import org.joml.Matrix4f;
+
+final class SketchMesh {
+    private static final int INITIAL_VERTICES = 96;
+    private static final int SECTION_SIZE = 16;
+    private static final int[] CUBE_CORNERS = {
+            0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1, 1, // south
+            1, 0, 0, 0, 0, 0, 0, 1, 0, 1, 1, 0, // north
+            1, 0, 1, 1, 0, 0, 1, 1, 0, 1, 1, 1, // east
+            0, 0, 0, 0, 0, 1, 0, 1, 1, 0, 1, 0, // west
+            0, 1, 0, 0, 1, 1, 1, 1, 1, 1, 1, 0, // up
+            0, 0, 0, 1, 0, 0, 1, 0, 1, 0, 0, 1 // down
+    };
+    private static final int[] FACE_AXES = { 2, 2, 0, 0, 1, 1 };
+    private static final int[] FACE_DIRECTIONS = { 1, -1, 1, -1, 1, -1 };
+
+    private final BlockPos anchor;
+    private final float inset;
+    private final Long2ObjectOpenHashMap<Section> sections = new Long2ObjectOpenHashMap<>();
+    private Section lastSection;
+    private long lastSectionKey;
+    private boolean compiled;
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int minZ = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+    private int maxZ = Integer.MIN_VALUE;
+    private Box bounds;
+
+    SketchMesh(BlockPos anchor, double inset) {
+        this.anchor = anchor;
+        this.inset = (float) inset;
+    }
+
+    BlockPos anchor() {
+        return anchor;
+    }
+
+    boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    Box bounds() {
+        Box box = bounds;
+        if (box == null) {
+            box = new Box(minX, minY, minZ, maxX + 1, maxY + 1, maxZ + 1);
+            bounds = box;
+        }
+        return box;
+    }
+
+    void addCube(int x, int y, int z, int color) {
+        bounds = null;
+        compiled = false;
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        minZ = Math.min(minZ, z);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+        maxZ = Math.max(maxZ, z);
+        section(x, y, z).addVoxel(x, y, z, color);
+    }
+
+    boolean emit(BufferBuilder buffer, Matrix4f matrix, Vec3d cameraPos, double maxDistanceSq, Frustum frustum,
+            float alphaScale) {
+        compile();
+        boolean emitted = false;
+        for (Section section : sections.values()) {
+            if (section.vertexCount == 0 || section.distanceSq(cameraPos) > maxDistanceSq) {
+                continue;
+            }
+            if (frustum != null && !frustum.isVisible(section.bounds())) {
+                continue;
+            }
+            section.emit(buffer, matrix, alphaScale);
+            emitted = true;
+        }
+        return emitted;
+    }
+
+    static void emitCube(BufferBuilder buffer, Matrix4f matrix, float x0, float y0, float z0, float size, int color) {
+        float x1 = x0 + size;
+        float y1 = y0 + size;
+        float z1 = z0 + size;
+        for (int i = 0; i < CUBE_CORNERS.length; i += 3) {
+            buffer.vertex(matrix, CUBE_CORNERS[i] == 0 ? x0 : x1, CUBE_CORNERS[i + 1] == 0 ? y0 : y1,
+                    CUBE_CORNERS[i + 2] == 0 ? z0 : z1)
+                    .color(color);
+        }
+    }
+
+    static int argb(int alpha, int red, int green, int blue) {
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    void compile() {
+        if (compiled) {
+            return;
+        }
+        int[] grid = new int[SECTION_SIZE * SECTION_SIZE * SECTION_SIZE];
+        int[] mask = new int[SECTION_SIZE * SECTION_SIZE];
+        for (Section section : sections.values()) {
+            section.compile(grid, mask);
+        }
+        compiled = true;
+    }
+
+    private boolean isOccupiedAt(int x, int y, int z) {
+        Section section = sections.get(ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4));
+        return section != null && section.isOccupied(localIndex(x & 15, y & 15, z & 15));
+    }
+
+    private Section section(int x, int y, int z) {
+        long key = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+        if (lastSection != null && lastSectionKey == key) {
+            return lastSection;
+        }
+        Section section = sections.get(key);
+        if (section == null) {
+            section = new Section(x >> 4, y >> 4, z >> 4);
+            sections.put(key, section);
+        }
+        lastSection = section;
+        lastSectionKey = key;
+        return section;
+    }
+
+    private static int localIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+
+    private final class Section {
+        private final int baseX;
+        private final int baseY;
+        private final int baseZ;
+        private final long[] occupancy = new long[SECTION_SIZE * SECTION_SIZE * SECTION_SIZE / Long.SIZE];
+        private final IntArrayList voxels = new IntArrayList();
+        private final IntArrayList voxelColors = new IntArrayList();
+        private float[] positions = new float[INITIAL_VERTICES * 3];
+        private int[] colors = new int[INITIAL_VERTICES];
+        private int vertexCount;
+        private int minX = Integer.MAX_VALUE;
+        private int minY = Integer.MAX_VALUE;
+        private int minZ = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE;
+        private int maxY = Integer.MIN_VALUE;
+        private int maxZ = Integer.MIN_VALUE;
+        private Box bounds;
+
+        Section(int sectionX, int sectionY, int sectionZ) {
+            this.baseX = sectionX << 4;
+            this.baseY = sectionY << 4;
+            this.baseZ = sectionZ << 4;
+        }
+
+        void addVoxel(int x, int y, int z, int color) {
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+            bounds = null;
+            int index = localIndex(x & 15, y & 15, z & 15);
+            occupancy[index >>> 6] |= 1L << index;
+            voxels.add(index);
+            voxelColors.add(color);
+        }
+
+        boolean isOccupied(int index) {
+            return (occupancy[index >>> 6] & (1L << index)) != 0L;
+        }
+
+        void compile(int[] grid, int[] mask) {
+            for (int i = 0; i < voxels.size(); i++) {
+                grid[voxels.getInt(i)] = voxelColors.getInt(i);
+            }
+            vertexCount = 0;
+            int[] local = new int[3];
+            for (int face = 0; face < FACE_AXES.length; face++) {
+                int axis = FACE_AXES[face];
+                int uAxis = (axis + 1) % 3;
+                int vAxis = (axis + 2) % 3;
+                for (int depth = 0; depth < SECTION_SIZE; depth++) {
+                    local[axis] = depth;
+                    boolean any = false;
+                    for (int v = 0; v < SECTION_SIZE; v++) {
+                        local[vAxis] = v;
+                        for (int u = 0; u < SECTION_SIZE; u++) {
+                            local[uAxis] = u;
+                            int color = grid[localIndex(local[0], local[1], local[2])];
+                            if (color != 0 && isExposed(grid, local, axis, FACE_DIRECTIONS[face])) {
+                                mask[v * SECTION_SIZE + u] = color;
+                                any = true;
+                            } else {
+                                mask[v * SECTION_SIZE + u] = 0;
+                            }
+                        }
+                    }
+                    if (any) {
+                        mergeSlice(mask, face, axis, uAxis, vAxis, depth);
+                    }
+                }
+            }
+            for (int i = 0; i < voxels.size(); i++) {
+                grid[voxels.getInt(i)] = 0;
+            }
+        }
+
+        private boolean isExposed(int[] grid, int[] local, int axis, int direction) {
+            int neighbor = local[axis] + direction;
+            if (neighbor >= 0 && neighbor < SECTION_SIZE) {
+                int saved = local[axis];
+                local[axis] = neighbor;
+                boolean exposed = grid[localIndex(local[0], local[1], local[2])] == 0;
+                local[axis] = saved;
+                return exposed;
+            }
+            int x = baseX + local[0] + (axis == 0 ? direction : 0);
+            int y = baseY + local[1] + (axis == 1 ? direction : 0);
+            int z = baseZ + local[2] + (axis == 2 ? direction : 0);
+            return !isOccupiedAt(x, y, z);
+        }
+
+        private void mergeSlice(int[] mask, int face, int axis, int uAxis, int vAxis, int depth) {
+            int[] low = new int[3];
+            int[] high = new int[3];
+            for (int v = 0; v < SECTION_SIZE; v++) {
+                for (int u = 0; u < SECTION_SIZE; ) {
+                    int color = mask[v * SECTION_SIZE + u];
+                    if (color == 0) {
+                        u++;
+                        continue;
+                    }
+                    int width = 1;
+                    while (u + width < SECTION_SIZE && mask[v * SECTION_SIZE + u + width] == color) {
+                        width++;
+                    }
+                    int height = 1;
+                    grow:
+                    while (v + height < SECTION_SIZE) {
+                        for (int k = 0; k < width; k++) {
+                            if (mask[(v + height) * SECTION_SIZE + u + k] != color) {
+                                break grow;
+                            }
+                        }
+                        height++;
+                    }
+                    for (int row = 0; row < height; row++) {
+                        Arrays.fill(mask, (v + row) * SECTION_SIZE + u, (v + row) * SECTION_SIZE + u + width, 0);
+                    }
+
+                    low[axis] = depth;
+                    high[axis] = depth + 1;
+                    low[uAxis] = u;
+                    high[uAxis] = u + width;
+                    low[vAxis] = v;
+                    high[vAxis] = v + height;
+                    addFace(face, low, high, color);
+                    u += width;
+                }
+            }
+        }
+
+        private void addFace(int face, int[] low, int[] high, int color) {
+            ensureCapacity(vertexCount + 4);
+            float x0 = baseX + low[0] - anchor.getX() - inset;
+            float y0 = baseY + low[1] - anchor.getY() - inset;
+            float z0 = baseZ + low[2] - anchor.getZ() - inset;
+            float x1 = baseX + high[0] - anchor.getX() + inset;
+            float y1 = baseY + high[1] - anchor.getY() + inset;
+            float z1 = baseZ + high[2] - anchor.getZ() + inset;
+
+            for (int i = face * 12; i < face * 12 + 12; i += 3) {
+                int p = vertexCount * 3;
+                positions[p] = CUBE_CORNERS[i] == 0 ? x0 : x1;
+                positions[p + 1] = CUBE_CORNERS[i + 1] == 0 ? y0 : y1;
+                positions[p + 2] = CUBE_CORNERS[i + 2] == 0 ? z0 : z1;
+                colors[vertexCount] = color;
+                vertexCount++;
+            }
+        }
+
+        Box bounds() {
+            Box box = bounds;
+            if (box == null) {
+                box = new Box(minX, minY, minZ, maxX + 1, maxY + 1, maxZ + 1);
+                bounds = box;
+            }
+            return box;
+        }
+
+        double distanceSq(Vec3d cameraPos) {
+            double dx = Math.max(Math.max(minX - cameraPos.x, cameraPos.x - (maxX + 1)), 0.0);
+            double dy = Math.max(Math.max(minY - cameraPos.y, cameraPos.y - (maxY + 1)), 0.0);
+            double dz = Math.max(Math.max(minZ - cameraPos.z, cameraPos.z - (maxZ + 1)), 0.0);
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        void emit(BufferBuilder buffer, Matrix4f matrix, float alphaScale) {
+            for (int i = 0, p = 0; i < vertexCount; i++, p += 3) {
+                int color = colors[i];
+                if (alphaScale != 1.0f) {
+                    int alpha = Math.round((color >>> 24) * alphaScale);
+                    color = (alpha << 24) | (color & 0xFFFFFF);
+                }
+                buffer.vertex(matrix, positions[p], positions[p + 1], positions[p + 2])
+                        .color(color);
+            }
+        }
+
+        private void ensureCapacity(int vertices) {
+            if (vertices <= colors.length) {
+                return;
+            }
+            int capacity = Math.max(vertices, colors.length * 2);
+            positions = Arrays.copyOf(positions, capacity * 3);
+            colors = Arrays.copyOf(colors, capacity);
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package org.solofausto.minecad;
 
 import net.fabricmc.api.ModInitializer;
+import net.minecraft.component.ComponentType;
 import net.minecraft.item.Item;
 import net.minecraft.registry.Registries;
 import net.minecraft.registry.Registry;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.registry.RegistryKeys;
 import net.minecraft.util.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.solofausto.minecad.blueprint.BlueprintCommands;
+import org.solofausto.minecad.blueprint.BlueprintManager;
+import org.solofausto.minecad.blueprint.BlueprintNetworking;
+import org.solofausto.minecad.blueprint.BlueprintReference;
 import org.solofausto.minecad.item.BlueprintToolItem;
 import org.solofausto.minecad.item.LineToolItem;
 import org.solofausto.minecad.item.SketchToolItem;
@@ -15,6 +21,15 @@ import org.solofausto.minecad.item.SketchToolItem;
 @SuppressWarnings("null")
 public class Minecad implements ModInitializer {
         public static final String MOD_ID = "minecad";
+        public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
+
+        public static final ComponentType<BlueprintReference> BLUEPRINT_REFERENCE = Registry.register(
+                        Registries.DATA_COMPONENT_TYPE,
+                        Identifier.of(MOD_ID, "blueprint"),
+                        ComponentType.<BlueprintReference>builder()
+                                        .codec(BlueprintReference.CODEC)
+                                        .packetCodec(BlueprintReference.PACKET_CODEC)
+                                        .build());
 
         public static final Identifier BLUEPRINT_TOOL_ID = Identifier.of(MOD_ID, "blueprint_tool");
         public static final Item BLUEPRINT_TOOL = Registry.register(
@@ -48,5 +63,7 @@ public class Minecad implements ModInitializer {
         @Override
         public void onInitialize() {
                 BlueprintCommands.register();
+                BlueprintManager.register();
+                BlueprintNetworking.register();
         }
 }
@@ -0,0 +1,58 @@
+package org.solofausto.minecad.blueprint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+
+final class BitmapRegion implements BlueprintRegion {
+    private volatile PlaneLabels labels;
+    private final int label;
+    private final BlueprintOrigin origin;
+    private final RasterRegions.Extent extent;
+    private final Box bounds;
+    private volatile List<BlockPos> worldBlocks;
+
+    BitmapRegion(PlaneLabels labels, int label, BlueprintOrigin origin, RasterRegions.Extent extent) {
+        this.labels = labels;
+        this.label = label;
+        this.origin = origin;
+        this.extent = extent;
+        this.bounds = BlueprintRegions.worldBounds(origin, extent.minU(), extent.maxU(), extent.minV(), extent.maxV());
+    }
+
+    // Labels are never reused and a surviving label keeps its cells, so any later snapshot
+    // resolves this region identically while letting the older label tiles be collected.
+    void rebind(PlaneLabels labels) {
+        this.labels = labels;
+    }
+
+    @Override
+    public boolean contains(PlanePos pos) {
+        return labels.get(pos.u(), pos.v()) == label;
+    }
+
+    @Override
+    public int cellCount() {
+        return extent.cellCount();
+    }
+
+    @Override
+    public List<BlockPos> worldBlocks() {
+        List<BlockPos> blocks = worldBlocks;
+        if (blocks == null) {
+            List<BlockPos> collected = new ArrayList<>(extent.cellCount());
+            labels.forEach(label, extent.minU(), extent.maxU(), extent.minV(), extent.maxV(),
+                    (u, v) -> collected.add(PlanePos.toWorldBlock(u, v, origin)));
+            blocks = Collections.unmodifiableList(collected);
+            worldBlocks = blocks;
+        }
+        return blocks;
+    }
+
+    @Override
+    public Box bounds() {
+        return bounds;
+    }
+}
@@ -59,7 +59,7 @@ public final class BlueprintCommands {
                                                                                         }
 
                                                                                         BlueprintSession session = BlueprintManager
-                                                                                                        .getInstance()
+                                                                                                        .server()
                                                                                                         .getOrCreate(player
                                                                                                                         .getUuid());
                                                                                         session.start(new BlueprintOrigin(
@@ -85,7 +85,7 @@ public final class BlueprintCommands {
                                                                                                         .getSource()
                                                                                                         .getPlayer();
                                                                                         BlueprintSession session = BlueprintManager
-                                                                                                        .getInstance()
+                                                                                                        .server()
                                                                                                         .getOrCreate(player
                                                                                                                         .getUuid());
                                                                                         if (session.getOrigin() == null) {
@@ -119,7 +119,7 @@ public final class BlueprintCommands {
                                 .then(CommandManager.literal("info")
                                                 .executes(context -> {
                                                         ServerPlayerEntity player = context.getSource().getPlayer();
-                                                        BlueprintSession session = BlueprintManager.getInstance()
+                                                        BlueprintSession session = BlueprintManager.server()
                                                                         .getOrCreate(player.getUuid());
                                                         if (session.getOrigin() == null) {
                                                                 context.getSource().sendError(
@@ -140,11 +140,35 @@ public final class BlueprintCommands {
                                 .then(CommandManager.literal("clear")
                                                 .executes(context -> {
                                                         ServerPlayerEntity player = context.getSource().getPlayer();
-                                                        BlueprintManager.getInstance().clear(player.getUuid());
+                                                        BlueprintManager.server().clear(player.getUuid());
                                                         context.getSource().sendFeedback(
                                                                         () -> Text.literal("Blueprint cleared."),
                                                                         false);
                                                         return 1;
+                                                }))
+                                .then(CommandManager.literal("delete")
+                                                .executes(context -> {
+                                                        ServerPlayerEntity player = context.getSource().getPlayer();
+                                                        java.util.UUID id = BlueprintManager.server()
+                                                                        .getOrCreate(player.getUuid())
+                                                                        .getCurrentBlueprintId();
+                                                        if (id == null) {
+                                                                context.getSource().sendError(
+                                                                                Text.literal("No active blueprint."));
+                                                                return 0;
+                                                        }
+
+                                                        BlueprintItemData.discard(
+                                                                        BlueprintItemData.findBlueprintStack(player,
+                                                                                        id),
+                                                                        id,
+                                                                        BlueprintStore.get(context.getSource()
+                                                                                        .getServer()));
+                                                        BlueprintManager.server().clear(player.getUuid());
+                                                        context.getSource().sendFeedback(
+                                                                        () -> Text.literal("Blueprint deleted."),
+                                                                        false);
+                                                        return 1;
                                                 })));
         }
 }
@@ -0,0 +1,33 @@
+package org.solofausto.minecad.blueprint;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.netty.buffer.ByteBuf;
+import java.util.Optional;
+import java.util.UUID;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.util.Uuids;
+
+public record BlueprintData(UUID id, int revision, Optional<BlueprintOrigin> origin, PackedGeometry geometry,
+        Optional<BlueprintPoint> pendingLineStart) {
+    public static final Codec<BlueprintData> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            Uuids.CODEC.fieldOf("id").forGetter(BlueprintData::id),
+            Codec.INT.optionalFieldOf("revision", 0).forGetter(BlueprintData::revision),
+            BlueprintOrigin.CODEC.optionalFieldOf("origin").forGetter(BlueprintData::origin),
+            PackedGeometry.CODEC.optionalFieldOf("geometry", PackedGeometry.EMPTY)
+                    .forGetter(BlueprintData::geometry),
+            BlueprintPoint.CODEC.optionalFieldOf("pending_line_start").forGetter(BlueprintData::pendingLineStart))
+            .apply(instance, BlueprintData::new));
+    public static final PacketCodec<ByteBuf, BlueprintData> PACKET_CODEC = PacketCodec.tuple(
+            Uuids.PACKET_CODEC, BlueprintData::id,
+            PacketCodecs.VAR_INT, BlueprintData::revision,
+            PacketCodecs.optional(BlueprintOrigin.PACKET_CODEC), BlueprintData::origin,
+            PackedGeometry.PACKET_CODEC, BlueprintData::geometry,
+            PacketCodecs.optional(BlueprintPoint.PACKET_CODEC), BlueprintData::pendingLineStart,
+            BlueprintData::new);
+
+    public BlueprintReference reference() {
+        return new BlueprintReference(id, revision);
+    }
+}
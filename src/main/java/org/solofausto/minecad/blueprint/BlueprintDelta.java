@@ -0,0 +1,55 @@
+package org.solofausto.minecad.blueprint;
+
+import io.netty.buffer.ByteBuf;
+import java.util.Optional;
+import java.util.UUID;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.util.Uuids;
+
+public record BlueprintDelta(UUID id, int baseRevision, int revision, PackedGeometry geometry,
+        Optional<BlueprintPoint> pendingLineStart) {
+    public static final PacketCodec<ByteBuf, BlueprintDelta> PACKET_CODEC = PacketCodec.tuple(
+            Uuids.PACKET_CODEC, BlueprintDelta::id,
+            PacketCodecs.VAR_INT, BlueprintDelta::baseRevision,
+            PacketCodecs.VAR_INT, BlueprintDelta::revision,
+            PackedGeometry.PACKET_CODEC, BlueprintDelta::geometry,
+            PacketCodecs.optional(BlueprintPoint.PACKET_CODEC), BlueprintDelta::pendingLineStart,
+            BlueprintDelta::new);
+
+    static BlueprintDelta between(BlueprintData previous, BlueprintData data) {
+        if (previous == null || !previous.id().equals(data.id()) || !previous.origin().equals(data.origin())) {
+            return null;
+        }
+        PackedGeometry appended = data.geometry().suffixFrom(previous.geometry());
+        if (appended == null) {
+            return null;
+        }
+        return new BlueprintDelta(data.id(), previous.revision(), data.revision(), appended,
+                data.pendingLineStart());
+    }
+
+    public BlueprintData applyTo(BlueprintData base, BlueprintSession session) {
+        if (base == null || !base.id().equals(id) || base.revision() != baseRevision) {
+            return null;
+        }
+
+        // A session showing the base revision takes the suffix directly and re-packs only what was appended.
+        PackedGeometry packed = null;
+        if (session != null && id.equals(session.getCurrentBlueprintId()) && session.isSyncedWith(base.reference())
+                && base.geometry().appendInto(session, geometry)) {
+            PackedGeometry appended = session.packGeometry();
+            if (appended.endsWith(base.geometry(), geometry)) {
+                packed = appended;
+            }
+        }
+
+        BlueprintData data = new BlueprintData(id, revision, base.origin(),
+                packed != null ? packed : base.geometry().concat(geometry), pendingLineStart);
+        if (packed != null) {
+            session.setPendingLineStart(pendingLineStart.orElse(null));
+            session.markSynced(data.reference());
+        }
+        return data;
+    }
+}
@@ -0,0 +1,20 @@
+package org.solofausto.minecad.blueprint;
+
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+import org.solofausto.minecad.Minecad;
+
+public record BlueprintDeltaPayload(BlueprintDelta delta) implements CustomPayload {
+    public static final CustomPayload.Id<BlueprintDeltaPayload> ID = new CustomPayload.Id<>(
+            Identifier.of(Minecad.MOD_ID, "blueprint_delta"));
+    public static final PacketCodec<RegistryByteBuf, BlueprintDeltaPayload> CODEC = BlueprintDelta.PACKET_CODEC
+            .<RegistryByteBuf>cast()
+            .xmap(BlueprintDeltaPayload::new, BlueprintDeltaPayload::delta);
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -1,14 +1,19 @@
 package org.solofausto.minecad.blueprint;
 
+import com.google.common.collect.MapMaker;
 import net.minecraft.component.DataComponentTypes;
 import net.minecraft.component.type.NbtComponent;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtList;
 import net.minecraft.util.math.Direction;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import net.minecraft.util.math.BlockPos;
+import org.solofausto.minecad.Minecad;
 
 public final class BlueprintItemData {
     public static final String NBT_BLUEPRINT = "Blueprint";
@@ -29,13 +34,21 @@ public final class BlueprintItemData {
     private static final String NBT_PENDING_LINE = "PendingLine";
     private static final String NBT_PENDING_X = "x";
     private static final String NBT_PENDING_Y = "y";
+    private static final String NBT_VERSION = "Version";
+    private static final String NBT_VERTICES = "Vertices";
+    private static final String NBT_POINT_COUNT = "PointCount";
+    private static final String NBT_EDGES = "Edges";
+    private static final String NBT_PENDING = "Pending";
+    private static final int PACKED_NBT_VERSION = 2;
+    private static final Map<NbtComponent, Optional<java.util.UUID>> LEGACY_IDS = new MapMaker().weakKeys()
+            .makeMap();
 
     private BlueprintItemData() {
     }
 
-    public static void writeToItem(ItemStack stack, BlueprintSession session) {
+    public static BlueprintDelta writeToItem(ItemStack stack, BlueprintSession session, BlueprintStore store) {
         if (stack == null || stack.isEmpty() || session == null || session.getOrigin() == null) {
-            return;
+            return null;
         }
 
         java.util.UUID id = session.getCurrentBlueprintId();
@@ -47,59 +60,181 @@ public final class BlueprintItemData {
         }
         session.setCurrentBlueprintId(id);
 
-        NbtCompound blueprintNbt = new NbtCompound();
         BlueprintOrigin origin = session.getOrigin();
-        BlockPos pos = origin.blockPos();
-
-        NbtCompound originNbt = new NbtCompound();
-        originNbt.putInt(NBT_X, pos.getX());
-        originNbt.putInt(NBT_Y, pos.getY());
-        originNbt.putInt(NBT_Z, pos.getZ());
-        originNbt.putString(NBT_FACE, origin.face().asString());
-        blueprintNbt.put(NBT_ORIGIN, originNbt);
-        blueprintNbt.putString(NBT_ID, id.toString());
-
-        NbtList pointsList = new NbtList();
-        for (BlueprintPoint point : session.getPoints()) {
-            NbtCompound pointNbt = new NbtCompound();
-            pointNbt.putDouble(NBT_POINT_X, point.x());
-            pointNbt.putDouble(NBT_POINT_Y, point.y());
-            pointsList.add(pointNbt);
-        }
-        blueprintNbt.put(NBT_POINTS, pointsList);
-
-        NbtList linesList = new NbtList();
-        for (BlueprintLine line : session.getLines()) {
-            NbtCompound lineNbt = new NbtCompound();
-            lineNbt.putDouble(NBT_LINE_X1, line.start().x());
-            lineNbt.putDouble(NBT_LINE_Y1, line.start().y());
-            lineNbt.putDouble(NBT_LINE_X2, line.end().x());
-            lineNbt.putDouble(NBT_LINE_Y2, line.end().y());
-            linesList.add(lineNbt);
-        }
-        blueprintNbt.put(NBT_LINES, linesList);
-
-        BlueprintPoint pending = session.getPendingLineStart();
-        if (pending != null) {
-            NbtCompound pendingNbt = new NbtCompound();
-            pendingNbt.putDouble(NBT_PENDING_X, pending.x());
-            pendingNbt.putDouble(NBT_PENDING_Y, pending.y());
-            blueprintNbt.put(NBT_PENDING_LINE, pendingNbt);
-        } else {
-            blueprintNbt.remove(NBT_PENDING_LINE);
+        if (origin == null) {
+            return null;
         }
+        BlueprintData previous = store.get(id);
+        int revision = previous == null ? 1 : previous.revision() + 1;
+        BlueprintData data = new BlueprintData(id, revision, Optional.of(origin), session.packGeometry(),
+                Optional.ofNullable(session.getPendingLineStart()).map(PackedGeometry::snap));
+        store.put(data);
+        stack.set(Minecad.BLUEPRINT_REFERENCE, data.reference());
+        removeLegacyData(stack);
+        session.markSynced(data.reference());
+        return BlueprintDelta.between(previous, data);
+    }
 
-        NbtCompound root = stack.getOrDefault(DataComponentTypes.CUSTOM_DATA, NbtComponent.DEFAULT).copyNbt();
-        root.put(NBT_BLUEPRINT, blueprintNbt);
-        stack.set(DataComponentTypes.CUSTOM_DATA, NbtComponent.of(root));
+    public static boolean loadFromItem(ItemStack stack, BlueprintSession session, BlueprintStore store) {
+        if (stack == null || stack.isEmpty() || session == null) {
+            return false;
+        }
+        return load(stack, session, store.get(getBlueprintId(stack)));
     }
 
-    public static boolean loadFromItem(ItemStack stack, BlueprintSession session) {
+    public static boolean load(ItemStack stack, BlueprintSession session, BlueprintData data) {
         if (stack == null || stack.isEmpty() || session == null) {
             return false;
         }
+        if (data == null || data.origin().isEmpty()) {
+            return loadLegacyFromItem(stack, session);
+        }
+        BlueprintReference reference = data.reference();
+        if (session.isSyncedWith(reference)) {
+            return true;
+        }
+
+        BlueprintOrigin origin = data.origin().get();
+        if (!data.id().equals(session.getCurrentBlueprintId()) || !origin.equals(session.getOrigin())
+                || !appendGeometry(session, data.geometry())) {
+            session.setCurrentBlueprintId(data.id());
+            session.start(origin);
+            data.geometry().decodeInto(session);
+        }
+        session.setPendingLineStart(data.pendingLineStart().map(PackedGeometry::snap).orElse(null));
+        session.markSynced(reference);
+        return true;
+    }
+
+    private static boolean appendGeometry(BlueprintSession session, PackedGeometry geometry) {
+        // Revisions that only extend the loaded one keep the session epoch and its incremental caches.
+        PackedGeometry current = session.packGeometry();
+        PackedGeometry suffix = geometry.suffixFrom(current);
+        return suffix != null && current.appendInto(session, suffix);
+    }
+
+    public static boolean reissueIfMissing(ItemStack stack, BlueprintSession session, BlueprintStore store) {
+        // A written reference whose data is gone must not be reused, or the new blueprint would take its id.
+        BlueprintReference reference = stack.get(Minecad.BLUEPRINT_REFERENCE);
+        if (reference == null || reference.revision() == 0 || store.get(reference.id()) != null) {
+            return false;
+        }
+        java.util.UUID id = java.util.UUID.randomUUID();
+        stack.set(Minecad.BLUEPRINT_REFERENCE, new BlueprintReference(id, 0));
+        session.setCurrentBlueprintId(id);
+        return true;
+    }
+
+    public static void discard(ItemStack stack, java.util.UUID blueprintId, BlueprintStore store) {
+        store.remove(blueprintId);
+        if (!stack.isEmpty()) {
+            stack.remove(Minecad.BLUEPRINT_REFERENCE);
+            removeLegacyData(stack);
+        }
+    }
+
+    public static java.util.UUID ensureBlueprintId(ItemStack stack, BlueprintSession session) {
+        if (stack == null || stack.isEmpty() || session == null) {
+            return null;
+        }
+
+        java.util.UUID id = getBlueprintId(stack);
+        if (id == null) {
+            id = java.util.UUID.randomUUID();
+            stack.set(Minecad.BLUEPRINT_REFERENCE, new BlueprintReference(id, 0));
+        }
+
+        session.setCurrentBlueprintId(id);
+        return id;
+    }
+
+    public static java.util.UUID getBlueprintId(ItemStack stack) {
+        if (stack == null || stack.isEmpty()) {
+            return null;
+        }
+
+        BlueprintReference reference = stack.get(Minecad.BLUEPRINT_REFERENCE);
+        if (reference != null) {
+            return reference.id();
+        }
+
+        NbtComponent custom = stack.get(DataComponentTypes.CUSTOM_DATA);
+        if (custom == null) {
+            return null;
+        }
+        // Components are immutable, so the parsed id stays valid for as long as the instance is alive.
+        return LEGACY_IDS.computeIfAbsent(custom, BlueprintItemData::readLegacyBlueprintId).orElse(null);
+    }
+
+    public static ItemStack findBlueprintStack(PlayerEntity player, java.util.UUID blueprintId) {
+        ItemStack main = player.getMainHandStack();
+        if (main.isOf(Minecad.BLUEPRINT_TOOL) && matchesBlueprint(main, blueprintId)) {
+            return main;
+        }
+
+        ItemStack off = player.getOffHandStack();
+        if (off.isOf(Minecad.BLUEPRINT_TOOL) && matchesBlueprint(off, blueprintId)) {
+            return off;
+        }
+
+        PlayerInventory inventory = player.getInventory();
+        for (int i = 0; i < inventory.size(); i++) {
+            ItemStack stack = inventory.getStack(i);
+            if (stack.isOf(Minecad.BLUEPRINT_TOOL) && matchesBlueprint(stack, blueprintId)) {
+                return stack;
+            }
+        }
+
+        return ItemStack.EMPTY;
+    }
+
+    private static boolean matchesBlueprint(ItemStack stack, java.util.UUID blueprintId) {
+        if (blueprintId == null) {
+            return true;
+        }
+        return blueprintId.equals(getBlueprintId(stack));
+    }
+
+    private static Optional<java.util.UUID> readLegacyBlueprintId(NbtComponent custom) {
+        if (!custom.contains(NBT_BLUEPRINT)) {
+            return Optional.empty();
+        }
+
+        NbtCompound root = custom.copyNbt();
+        Optional<NbtCompound> blueprintOpt = root.getCompound(NBT_BLUEPRINT);
+        if (blueprintOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Optional<String> idOpt = blueprintOpt.get().getString(NBT_ID);
+        if (idOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(java.util.UUID.fromString(idOpt.get()));
+        } catch (IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private static void removeLegacyData(ItemStack stack) {
+        NbtComponent custom = stack.get(DataComponentTypes.CUSTOM_DATA);
+        if (custom != null && custom.contains(NBT_BLUEPRINT)) {
+            NbtComponent.set(DataComponentTypes.CUSTOM_DATA, stack, nbt -> nbt.remove(NBT_BLUEPRINT));
+        }
+    }
+
+    private static boolean loadLegacyFromItem(ItemStack stack, BlueprintSession session) {
+        NbtComponent custom = stack.get(DataComponentTypes.CUSTOM_DATA);
+        if (custom == null || !custom.contains(NBT_BLUEPRINT)) {
+            return false;
+        }
+        if (session.isSyncedWith(custom)) {
+            return true;
+        }
 
-        NbtCompound root = stack.getOrDefault(DataComponentTypes.CUSTOM_DATA, NbtComponent.DEFAULT).copyNbt();
+        NbtCompound root = custom.copyNbt();
         Optional<NbtCompound> blueprintOpt = root.getCompound(NBT_BLUEPRINT);
         if (blueprintOpt.isEmpty()) {
             return false;
@@ -143,6 +278,30 @@ public final class BlueprintItemData {
         BlockPos pos = new BlockPos(xOpt.get(), yOpt.get(), zOpt.get());
         session.start(new BlueprintOrigin(pos, face));
 
+        if (blueprintNbt.getInt(NBT_VERSION).orElse(1) >= PACKED_NBT_VERSION) {
+            readPackedGeometry(blueprintNbt, session);
+        } else {
+            readLegacyGeometry(blueprintNbt, session);
+        }
+
+        session.markSynced(custom);
+        return true;
+    }
+
+    private static void readPackedGeometry(NbtCompound blueprintNbt, BlueprintSession session) {
+        int[] vertices = blueprintNbt.getIntArray(NBT_VERTICES).orElseGet(() -> new int[0]);
+        int pointCount = blueprintNbt.getInt(NBT_POINT_COUNT).orElse(vertices.length / 2);
+        byte[] edges = blueprintNbt.getByteArray(NBT_EDGES).orElseGet(() -> new byte[0]);
+        new PackedGeometry(vertices, pointCount, edges).decodeInto(session);
+
+        int[] pending = blueprintNbt.getIntArray(NBT_PENDING).orElse(null);
+        if (pending != null && pending.length == 2) {
+            session.setPendingLineStart(new BlueprintPoint(PackedGeometry.dequantize(pending[0]),
+                    PackedGeometry.dequantize(pending[1])));
+        }
+    }
+
+    private static void readLegacyGeometry(NbtCompound blueprintNbt, BlueprintSession session) {
         NbtList pointsList = blueprintNbt.getListOrEmpty(NBT_POINTS);
         for (int i = 0; i < pointsList.size(); i++) {
             Optional<NbtCompound> pointOpt = pointsList.getCompound(i);
@@ -189,49 +348,5 @@ public final class BlueprintItemData {
                 session.setPendingLineStart(new BlueprintPoint(px.get(), py.get()));
             }
         }
-
-        return true;
-    }
-
-    public static java.util.UUID ensureBlueprintId(ItemStack stack, BlueprintSession session) {
-        if (stack == null || stack.isEmpty() || session == null) {
-            return null;
-        }
-
-        java.util.UUID id = getBlueprintId(stack);
-        if (id == null) {
-            id = java.util.UUID.randomUUID();
-            NbtCompound root = stack.getOrDefault(DataComponentTypes.CUSTOM_DATA, NbtComponent.DEFAULT).copyNbt();
-            NbtCompound blueprintNbt = root.getCompound(NBT_BLUEPRINT).orElseGet(NbtCompound::new);
-            blueprintNbt.putString(NBT_ID, id.toString());
-            root.put(NBT_BLUEPRINT, blueprintNbt);
-            stack.set(DataComponentTypes.CUSTOM_DATA, NbtComponent.of(root));
-        }
-
-        session.setCurrentBlueprintId(id);
-        return id;
-    }
-
-    public static java.util.UUID getBlueprintId(ItemStack stack) {
-        if (stack == null || stack.isEmpty()) {
-            return null;
-        }
-
-        NbtCompound root = stack.getOrDefault(DataComponentTypes.CUSTOM_DATA, NbtComponent.DEFAULT).copyNbt();
-        Optional<NbtCompound> blueprintOpt = root.getCompound(NBT_BLUEPRINT);
-        if (blueprintOpt.isEmpty()) {
-            return null;
-        }
-
-        Optional<String> idOpt = blueprintOpt.get().getString(NBT_ID);
-        if (idOpt.isEmpty()) {
-            return null;
-        }
-
-        try {
-            return java.util.UUID.fromString(idOpt.get());
-        } catch (IllegalArgumentException ex) {
-            return null;
-        }
     }
-}
\ No newline at end of file
+}
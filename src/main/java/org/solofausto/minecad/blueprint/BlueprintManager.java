@@ -1,31 +1,125 @@
 package org.solofausto.minecad.blueprint;
 
+import java.util.Comparator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.world.World;
 
 public class BlueprintManager {
-    private static final BlueprintManager INSTANCE = new BlueprintManager();
+    private static final long IDLE_TIMEOUT_MS = 10L * 60L * 1000L;
+    private static final int MAX_SESSIONS = 256;
+    private static final int EVICTION_INTERVAL_TICKS = 20 * 60;
 
-    private final Map<UUID, BlueprintSession> sessions = new ConcurrentHashMap<>();
+    private static final BlueprintManager CLIENT = new BlueprintManager();
+    private static final BlueprintManager SERVER = new BlueprintManager();
+
+    private final Map<UUID, Entry> sessions = new ConcurrentHashMap<>();
+    private volatile Predicate<UUID> online = id -> false;
 
     private BlueprintManager() {
     }
 
-    public static BlueprintManager getInstance() {
-        return INSTANCE;
+    public static BlueprintManager client() {
+        return CLIENT;
+    }
+
+    public static BlueprintManager server() {
+        return SERVER;
+    }
+
+    public static BlueprintManager of(World world) {
+        return world.isClient() ? CLIENT : SERVER;
+    }
+
+    public static void register() {
+        ServerPlayConnectionEvents.DISCONNECT.register(
+                (handler, server) -> SERVER.clear(handler.getPlayer().getUuid()));
+        ServerLifecycleEvents.SERVER_STARTED.register(
+                server -> SERVER.online = id -> server.getPlayerManager().getPlayer(id) != null);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            SERVER.online = id -> false;
+            SERVER.clearAll();
+        });
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (server.getTicks() % EVICTION_INTERVAL_TICKS == 0) {
+                SERVER.evictIdle();
+            }
+        });
     }
 
     public BlueprintSession getOrCreate(UUID playerId) {
-        return sessions.computeIfAbsent(playerId, id -> new BlueprintSession());
+        Entry entry = sessions.get(playerId);
+        if (entry == null) {
+            entry = sessions.computeIfAbsent(playerId, id -> new Entry(new BlueprintSession()));
+            if (sessions.size() > MAX_SESSIONS) {
+                evictOldest(playerId);
+            }
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.session;
     }
 
     public Optional<BlueprintSession> get(UUID playerId) {
-        return Optional.ofNullable(sessions.get(playerId));
+        Entry entry = sessions.get(playerId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return Optional.of(entry.session);
     }
 
     public void clear(UUID playerId) {
         sessions.remove(playerId);
     }
+
+    public void clearAll() {
+        sessions.clear();
+    }
+
+    public void evictIdle() {
+        // Online players keep their session, which holds the active blueprint id the item cannot restore;
+        // only its derived caches are released.
+        long cutoff = System.currentTimeMillis() - IDLE_TIMEOUT_MS;
+        Predicate<UUID> online = this.online;
+        sessions.entrySet().removeIf(entry -> {
+            if (entry.getValue().lastAccess >= cutoff) {
+                return false;
+            }
+            if (online.test(entry.getKey())) {
+                entry.getValue().session.trimCaches();
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private void evictOldest(UUID keep) {
+        // Evicted sessions are rebuilt from the blueprint item on next use.
+        Predicate<UUID> online = this.online;
+        while (sessions.size() > MAX_SESSIONS) {
+            Optional<Map.Entry<UUID, Entry>> oldest = sessions.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(keep) && !online.test(entry.getKey()))
+                    .min(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+            if (oldest.isEmpty()) {
+                return;
+            }
+            sessions.remove(oldest.get().getKey(), oldest.get().getValue());
+        }
+    }
+
+    private static final class Entry {
+        private final BlueprintSession session;
+        private volatile long lastAccess;
+
+        Entry(BlueprintSession session) {
+            this.session = session;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
 }
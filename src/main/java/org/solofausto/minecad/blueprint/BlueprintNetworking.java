@@ -0,0 +1,66 @@
+package org.solofausto.minecad.blueprint;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+
+public final class BlueprintNetworking {
+    private BlueprintNetworking() {
+    }
+
+    public static void register() {
+        PayloadTypeRegistry.playS2C().register(BlueprintSyncPayload.ID, BlueprintSyncPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(BlueprintDeltaPayload.ID, BlueprintDeltaPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(BlueprintRequestPayload.ID, BlueprintRequestPayload.CODEC);
+        ServerPlayNetworking.registerGlobalReceiver(BlueprintRequestPayload.ID, (payload, context) -> {
+            ServerPlayerEntity player = context.player();
+            if (BlueprintItemData.findBlueprintStack(player, payload.id()).isEmpty()) {
+                return;
+            }
+            BlueprintData data = BlueprintStore.get(context.server()).get(payload.id());
+            if (data != null && !sendFull(context.responseSender(), data)) {
+                player.sendMessage(Text.literal("Blueprint is too large to display."), true);
+            }
+        });
+    }
+
+    public static void sync(PlayerEntity player, BlueprintDelta delta) {
+        // Edits only send what they appended; anything else is fetched by the client when it sees the new revision.
+        if (delta != null && player instanceof ServerPlayerEntity serverPlayer
+                && ServerPlayNetworking.canSend(serverPlayer, BlueprintDeltaPayload.ID)) {
+            ServerPlayNetworking.send(serverPlayer, new BlueprintDeltaPayload(delta));
+        }
+    }
+
+    private static boolean sendFull(PacketSender sender, BlueprintData data) {
+        ByteBuf buf = Unpooled.buffer();
+        byte[] bytes;
+        try {
+            BlueprintData.PACKET_CODEC.encode(buf, data);
+            bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+        } finally {
+            buf.release();
+        }
+
+        // Large blueprints are split so no single payload exceeds the custom payload size limit.
+        int parts = Math.max(1, (bytes.length + BlueprintSyncPayload.MAX_PART_BYTES - 1)
+                / BlueprintSyncPayload.MAX_PART_BYTES);
+        if (parts > BlueprintSyncPayload.MAX_PARTS) {
+            return false;
+        }
+        for (int part = 0; part < parts; part++) {
+            int from = part * BlueprintSyncPayload.MAX_PART_BYTES;
+            int to = Math.min(bytes.length, from + BlueprintSyncPayload.MAX_PART_BYTES);
+            sender.sendPacket(new BlueprintSyncPayload(data.id(), data.revision(), part, parts,
+                    Arrays.copyOfRange(bytes, from, to)));
+        }
+        return true;
+    }
+}
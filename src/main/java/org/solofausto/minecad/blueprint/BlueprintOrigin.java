@@ -1,7 +1,19 @@
 package org.solofausto.minecad.blueprint;
 
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.codec.PacketCodec;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 
 public record BlueprintOrigin(BlockPos blockPos, Direction face) {
+    public static final Codec<BlueprintOrigin> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            BlockPos.CODEC.fieldOf("pos").forGetter(BlueprintOrigin::blockPos),
+            Direction.CODEC.fieldOf("face").forGetter(BlueprintOrigin::face))
+            .apply(instance, BlueprintOrigin::new));
+    public static final PacketCodec<ByteBuf, BlueprintOrigin> PACKET_CODEC = PacketCodec.tuple(
+            BlockPos.PACKET_CODEC, BlueprintOrigin::blockPos,
+            Direction.PACKET_CODEC, BlueprintOrigin::face,
+            BlueprintOrigin::new);
 }
@@ -1,4 +1,18 @@
 package org.solofausto.minecad.blueprint;
 
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+
 public record BlueprintPoint(double x, double y) {
+    public static final Codec<BlueprintPoint> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            Codec.DOUBLE.fieldOf("x").forGetter(BlueprintPoint::x),
+            Codec.DOUBLE.fieldOf("y").forGetter(BlueprintPoint::y))
+            .apply(instance, BlueprintPoint::new));
+    public static final PacketCodec<ByteBuf, BlueprintPoint> PACKET_CODEC = PacketCodec.tuple(
+            PacketCodecs.DOUBLE, BlueprintPoint::x,
+            PacketCodecs.DOUBLE, BlueprintPoint::y,
+            BlueprintPoint::new);
 }
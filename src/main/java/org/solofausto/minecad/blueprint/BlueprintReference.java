@@ -0,0 +1,20 @@
+package org.solofausto.minecad.blueprint;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.netty.buffer.ByteBuf;
+import java.util.UUID;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.util.Uuids;
+
+public record BlueprintReference(UUID id, int revision) {
+    public static final Codec<BlueprintReference> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            Uuids.CODEC.fieldOf("id").forGetter(BlueprintReference::id),
+            Codec.INT.optionalFieldOf("revision", 0).forGetter(BlueprintReference::revision))
+            .apply(instance, BlueprintReference::new));
+    public static final PacketCodec<ByteBuf, BlueprintReference> PACKET_CODEC = PacketCodec.tuple(
+            Uuids.PACKET_CODEC, BlueprintReference::id,
+            PacketCodecs.VAR_INT, BlueprintReference::revision,
+            BlueprintReference::new);
+}
@@ -0,0 +1,15 @@
+package org.solofausto.minecad.blueprint;
+
+import java.util.List;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+
+public interface BlueprintRegion {
+    boolean contains(PlanePos pos);
+
+    int cellCount();
+
+    List<BlockPos> worldBlocks();
+
+    Box bounds();
+}
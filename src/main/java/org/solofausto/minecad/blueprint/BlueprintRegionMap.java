@@ -0,0 +1,44 @@
+package org.solofausto.minecad.blueprint;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import java.util.List;
+
+public final class BlueprintRegionMap {
+    public static final BlueprintRegionMap EMPTY = new BlueprintRegionMap(List.of(), null, null);
+
+    private final List<BlueprintRegion> regions;
+    private final PlaneLabels labels;
+    private final Int2ObjectMap<? extends BlueprintRegion> byLabel;
+
+    BlueprintRegionMap(List<BlueprintRegion> regions, PlaneLabels labels,
+            Int2ObjectMap<? extends BlueprintRegion> byLabel) {
+        this.regions = regions;
+        this.labels = labels;
+        this.byLabel = byLabel;
+    }
+
+    static BlueprintRegionMap of(List<BlueprintRegion> regions) {
+        return regions.isEmpty() ? EMPTY : new BlueprintRegionMap(List.copyOf(regions), null, null);
+    }
+
+    public List<BlueprintRegion> regions() {
+        return regions;
+    }
+
+    public boolean isEmpty() {
+        return regions.isEmpty();
+    }
+
+    public BlueprintRegion regionAt(PlanePos pos) {
+        if (labels != null) {
+            int label = labels.get(pos.u(), pos.v());
+            return label == 0 ? null : byLabel.get(label);
+        }
+        for (BlueprintRegion region : regions) {
+            if (region.contains(pos)) {
+                return region;
+            }
+        }
+        return null;
+    }
+}
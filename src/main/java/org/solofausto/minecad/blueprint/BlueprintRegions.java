@@ -0,0 +1,42 @@
+package org.solofausto.minecad.blueprint;
+
+import java.util.List;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+
+public final class BlueprintRegions {
+    private static final long PLANAR_ENGINE_MIN_AREA = 512L * 512L;
+
+    private BlueprintRegions() {
+    }
+
+    static boolean usePlanarEngine(List<BlueprintLine> lines) {
+        return extentArea(lines) >= PLANAR_ENGINE_MIN_AREA;
+    }
+
+    static Box worldBounds(BlueprintOrigin origin, int minU, int maxU, int minV, int maxV) {
+        BlockPos min = PlanePos.toWorldBlock(minU, minV, origin);
+        BlockPos max = PlanePos.toWorldBlock(maxU, maxV, origin);
+        return new Box(
+                Math.min(min.getX(), max.getX()),
+                Math.min(min.getY(), max.getY()),
+                Math.min(min.getZ(), max.getZ()),
+                Math.max(min.getX(), max.getX()) + 1,
+                Math.max(min.getY(), max.getY()) + 1,
+                Math.max(min.getZ(), max.getZ()) + 1);
+    }
+
+    private static long extentArea(List<BlueprintLine> lines) {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (BlueprintLine line : lines) {
+            minX = Math.min(minX, Math.min(line.start().x(), line.end().x()));
+            maxX = Math.max(maxX, Math.max(line.start().x(), line.end().x()));
+            minY = Math.min(minY, Math.min(line.start().y(), line.end().y()));
+            maxY = Math.max(maxY, Math.max(line.start().y(), line.end().y()));
+        }
+        return (long) (maxX - minX + 3.0) * (long) (maxY - minY + 3.0);
+    }
+}
@@ -0,0 +1,22 @@
+package org.solofausto.minecad.blueprint;
+
+import java.util.UUID;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Uuids;
+import org.solofausto.minecad.Minecad;
+
+public record BlueprintRequestPayload(UUID id) implements CustomPayload {
+    public static final CustomPayload.Id<BlueprintRequestPayload> ID = new CustomPayload.Id<>(
+            Identifier.of(Minecad.MOD_ID, "blueprint_request"));
+    public static final PacketCodec<RegistryByteBuf, BlueprintRequestPayload> CODEC = Uuids.PACKET_CODEC
+            .<RegistryByteBuf>cast()
+            .xmap(BlueprintRequestPayload::new, BlueprintRequestPayload::id);
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -1,37 +1,58 @@
 package org.solofausto.minecad.blueprint;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Vec3d;
 
 public class BlueprintSession {
     private BlueprintOrigin origin;
-    private final List<BlueprintPoint> points = new ArrayList<>();
-    private final List<BlueprintLine> lines = new ArrayList<>();
-    private BlueprintPoint pendingLineStart;
-    private java.util.UUID currentBlueprintId;
+    private final AppendOnlyList<BlueprintPoint> points = new AppendOnlyList<>();
+    private final AppendOnlyList<BlueprintLine> lines = new AppendOnlyList<>();
+    private volatile Geometry geometry = Geometry.EMPTY;
+    private final Long2IntOpenHashMap pointCells = new Long2IntOpenHashMap();
+    private final Set<EdgeKey> edges = new HashSet<>();
+    private volatile BlueprintPoint pendingLineStart;
+    private volatile java.util.UUID currentBlueprintId;
     private final Object geometryLock = new Object();
+    private final Object regionsLock = new Object();
     private long geometryVersion;
-    private transient long cachedVersion = -1;
+    private long geometryEpoch;
+    private long stateVersion;
+    private Object syncedData;
+    private long syncedStateVersion = -1;
     private transient BlueprintOrigin cachedOrigin;
-    private transient List<BlockPos> cachedPointBlocks = List.of();
-    private transient List<LineBlockCache> cachedLineBlocks = List.of();
+    private transient long cachedEpoch = -1;
+    private final transient PackedBlocks.Builder pointBlockCache = new PackedBlocks.Builder(16);
+    private final transient AppendOnlyList<LineBlockCache> lineBlockCache = new AppendOnlyList<>();
+    private transient volatile GeometrySnapshot cachedSnapshot;
+    private transient volatile RegionsSnapshot cachedRegions;
+    private transient RasterRegions rasterRegions;
+    private final transient PackedGeometry.Encoder packedGeometry = new PackedGeometry.Encoder();
 
     public void start(BlueprintOrigin origin) {
         synchronized (geometryLock) {
             this.origin = origin;
             this.points.clear();
             this.lines.clear();
+            this.pointCells.clear();
+            this.edges.clear();
             this.pendingLineStart = null;
+            geometryEpoch++;
             markGeometryDirtyLocked();
         }
     }
 
     public BlueprintOrigin getOrigin() {
-        return origin;
+        return geometry.origin();
+    }
+
+    public Geometry geometry() {
+        return geometry;
     }
 
     public java.util.UUID getCurrentBlueprintId() {
@@ -39,41 +60,84 @@ public class BlueprintSession {
     }
 
     public void setCurrentBlueprintId(java.util.UUID currentBlueprintId) {
-        this.currentBlueprintId = currentBlueprintId;
+        synchronized (geometryLock) {
+            if (!java.util.Objects.equals(this.currentBlueprintId, currentBlueprintId)) {
+                this.currentBlueprintId = currentBlueprintId;
+                stateVersion++;
+            }
+        }
     }
 
     public void addPoint(BlueprintPoint point) {
         synchronized (geometryLock) {
+            PlanePos cell = PlanePos.of(point);
+            pointCells.putIfAbsent(PlaneBitmap.cellKey(cell.u(), cell.v()), points.size());
             points.add(point);
             markGeometryDirtyLocked();
         }
     }
 
-    public void addLine(BlueprintLine line) {
+    public BlueprintPoint findPointInCell(PlanePos cell) {
         synchronized (geometryLock) {
-            lines.add(line);
-            markGeometryDirtyLocked();
+            int index = pointCells.getOrDefault(PlaneBitmap.cellKey(cell.u(), cell.v()), -1);
+            return index < 0 ? null : points.get(index);
         }
     }
 
-    public List<BlueprintPoint> getPoints() {
+    public boolean hasPointInCell(PlanePos cell) {
         synchronized (geometryLock) {
-            return Collections.unmodifiableList(new ArrayList<>(points));
+            return pointCells.containsKey(PlaneBitmap.cellKey(cell.u(), cell.v()));
         }
     }
 
-    public List<BlueprintLine> getLines() {
+    public boolean addLine(BlueprintLine line) {
         synchronized (geometryLock) {
-            return Collections.unmodifiableList(new ArrayList<>(lines));
+            if (!edges.add(EdgeKey.of(line))) {
+                return false;
+            }
+            lines.add(line);
+            markGeometryDirtyLocked();
+            return true;
         }
     }
 
+    public List<BlueprintPoint> getPoints() {
+        return geometry.points();
+    }
+
+    public List<BlueprintLine> getLines() {
+        return geometry.lines();
+    }
+
+    public long getGeometryVersion() {
+        return geometry.version();
+    }
+
     public BlueprintPoint getPendingLineStart() {
         return pendingLineStart;
     }
 
     public void setPendingLineStart(BlueprintPoint pendingLineStart) {
-        this.pendingLineStart = pendingLineStart;
+        synchronized (geometryLock) {
+            this.pendingLineStart = pendingLineStart;
+            stateVersion++;
+        }
+    }
+
+    public boolean isSyncedWith(Object data) {
+        synchronized (geometryLock) {
+            if (data == null || syncedData == null || syncedStateVersion != stateVersion) {
+                return false;
+            }
+            return data == syncedData || data.equals(syncedData);
+        }
+    }
+
+    public void markSynced(Object data) {
+        synchronized (geometryLock) {
+            syncedData = data;
+            syncedStateVersion = stateVersion;
+        }
     }
 
     public void clear() {
@@ -81,20 +145,106 @@ public class BlueprintSession {
             origin = null;
             points.clear();
             lines.clear();
+            pointCells.clear();
+            edges.clear();
             pendingLineStart = null;
             currentBlueprintId = null;
+            geometryEpoch++;
             markGeometryDirtyLocked();
         }
     }
 
-    public List<BlockPos> getCachedPointBlocks() {
-        ensureCache();
-        return cachedPointBlocks;
+    public PackedBlocks getCachedPointBlocks() {
+        return snapshot().pointBlocks();
     }
 
     public List<LineBlockCache> getCachedLineBlocks() {
-        ensureCache();
-        return cachedLineBlocks;
+        return snapshot().lineBlocks();
+    }
+
+    public PackedGeometry packGeometry() {
+        synchronized (geometryLock) {
+            return packedGeometry.update(geometry, this::pointIndexLocked);
+        }
+    }
+
+    void adoptPackedGeometry(PackedGeometry packed, int previousStart) {
+        synchronized (geometryLock) {
+            packedGeometry.adopt(packed, geometryEpoch, lines.size(), previousStart);
+        }
+    }
+
+    private int pointIndexLocked(BlueprintPoint point) {
+        PlanePos cell = PlanePos.of(point);
+        int index = pointCells.getOrDefault(PlaneBitmap.cellKey(cell.u(), cell.v()), -1);
+        return index >= 0 && points.get(index).equals(point) ? index : -1;
+    }
+
+    public GeometrySnapshot snapshot() {
+        GeometrySnapshot snapshot = cachedSnapshot;
+        if (snapshot != null && snapshot.version() == geometry.version()) {
+            return snapshot;
+        }
+        return ensureCache();
+    }
+
+    public BlueprintRegionMap getCachedRegions() {
+        return getCachedRegions(snapshot());
+    }
+
+    public BlueprintRegionMap getCachedRegions(GeometrySnapshot snapshot) {
+        RegionsSnapshot regions = cachedRegions;
+        if (regions != null && regions.version() == snapshot.version()) {
+            return regions.regions();
+        }
+        synchronized (regionsLock) {
+            regions = cachedRegions;
+            if (regions != null && regions.version() == snapshot.version()) {
+                return regions.regions();
+            }
+            BlueprintRegionMap computed = computeRegions(snapshot);
+            if (regions == null || regions.version() < snapshot.version()) {
+                cachedRegions = new RegionsSnapshot(snapshot.version(), computed);
+            }
+            return computed;
+        }
+    }
+
+    private BlueprintRegionMap computeRegions(GeometrySnapshot snapshot) {
+        BlueprintOrigin origin = snapshot.origin();
+        List<BlueprintLine> lines = snapshot.geometry().lines();
+        if (origin == null || lines.isEmpty()) {
+            rasterRegions = null;
+            return BlueprintRegionMap.EMPTY;
+        }
+        if (BlueprintRegions.usePlanarEngine(lines)) {
+            rasterRegions = null;
+            return BlueprintRegionMap.of(PlanarRegions.detect(origin, lines, snapshot.lineBlocks()));
+        }
+
+        long epoch = snapshot.geometry().epoch();
+        List<LineBlockCache> lineBlocks = snapshot.lineBlocks();
+        if (rasterRegions == null || !rasterRegions.canExtend(origin, epoch, lineBlocks.size())) {
+            rasterRegions = new RasterRegions(origin, epoch);
+        }
+        rasterRegions.update(lineBlocks);
+        return rasterRegions.regions();
+    }
+
+    // Drops everything derived from the geometry; it is rebuilt on the next access.
+    void trimCaches() {
+        synchronized (geometryLock) {
+            pointBlockCache.clear();
+            lineBlockCache.clear();
+            cachedOrigin = null;
+            cachedEpoch = -1;
+            cachedSnapshot = null;
+            packedGeometry.clear();
+        }
+        synchronized (regionsLock) {
+            cachedRegions = null;
+            rasterRegions = null;
+        }
     }
 
     private void markGeometryDirty() {
@@ -105,127 +255,132 @@ public class BlueprintSession {
 
     private void markGeometryDirtyLocked() {
         geometryVersion++;
+        stateVersion++;
+        geometry = new Geometry(geometryVersion, geometryEpoch, origin, points.snapshot(), lines.snapshot());
     }
 
-    private void ensureCache() {
+    private GeometrySnapshot ensureCache() {
         synchronized (geometryLock) {
+            GeometrySnapshot snapshot = cachedSnapshot;
+            if (snapshot != null && snapshot.version() == geometryVersion) {
+                return snapshot;
+            }
             if (origin == null) {
-                cachedPointBlocks = List.of();
-                cachedLineBlocks = List.of();
-                cachedVersion = geometryVersion;
+                pointBlockCache.clear();
+                lineBlockCache.clear();
                 cachedOrigin = null;
-                return;
+                cachedEpoch = -1;
+                snapshot = new GeometrySnapshot(geometry, PackedBlocks.EMPTY, List.of());
+                cachedSnapshot = snapshot;
+                return snapshot;
             }
 
-            if (cachedVersion == geometryVersion && origin.equals(cachedOrigin)) {
-                return;
+            // Geometry only grows within an epoch, so only new entries need projecting.
+            if (cachedEpoch != geometryEpoch || !origin.equals(cachedOrigin)
+                    || pointBlockCache.size() > points.size() || lineBlockCache.size() > lines.size()) {
+                pointBlockCache.clear();
+                lineBlockCache.clear();
             }
-
-            List<BlockPos> pointBlocks = new ArrayList<>(points.size());
-            for (BlueprintPoint point : points) {
-                Vec3d world = BlueprintGeometry.toWorldCoords(point, origin);
-                pointBlocks.add(BlockPos.ofFloored(world));
+            for (int i = pointBlockCache.size(); i < points.size(); i++) {
+                BlockPos block = BlockPos.ofFloored(BlueprintGeometry.toWorldCoords(points.get(i), origin));
+                pointBlockCache.add(block.getX(), block.getY(), block.getZ());
             }
-
-            List<LineBlockCache> lineBlocks = new ArrayList<>(lines.size());
-            for (BlueprintLine line : lines) {
-                Vec3d startWorld = BlueprintGeometry.toWorldCoords(line.start(), origin);
-                Vec3d endWorld = BlueprintGeometry.toWorldCoords(line.end(), origin);
-                BlockPos start = BlockPos.ofFloored(startWorld);
-                BlockPos end = BlockPos.ofFloored(endWorld);
-                List<BlockPos> blocks = getLineBlocks(start, end);
-                Box bounds = new Box(
-                        Math.min(start.getX(), end.getX()),
-                        Math.min(start.getY(), end.getY()),
-                        Math.min(start.getZ(), end.getZ()),
-                        Math.max(start.getX(), end.getX()) + 1,
-                        Math.max(start.getY(), end.getY()) + 1,
-                        Math.max(start.getZ(), end.getZ()) + 1);
-                lineBlocks.add(new LineBlockCache(blocks, bounds));
+            for (int i = lineBlockCache.size(); i < lines.size(); i++) {
+                lineBlockCache.add(lineCache(lines.get(i)));
             }
 
-            cachedPointBlocks = Collections.unmodifiableList(pointBlocks);
-            cachedLineBlocks = Collections.unmodifiableList(lineBlocks);
-            cachedVersion = geometryVersion;
             cachedOrigin = origin;
+            cachedEpoch = geometryEpoch;
+            snapshot = new GeometrySnapshot(geometry, pointBlockCache.build(), lineBlockCache.snapshot());
+            cachedSnapshot = snapshot;
+            return snapshot;
         }
     }
 
-    private static List<BlockPos> getLineBlocks(BlockPos start, BlockPos end) {
-        List<BlockPos> blocks = new ArrayList<>();
-        int x1 = start.getX();
-        int y1 = start.getY();
-        int z1 = start.getZ();
-        int x2 = end.getX();
-        int y2 = end.getY();
-        int z2 = end.getZ();
-
-        int dx = Math.abs(x2 - x1);
-        int dy = Math.abs(y2 - y1);
-        int dz = Math.abs(z2 - z1);
-
-        int xs = x2 > x1 ? 1 : -1;
-        int ys = y2 > y1 ? 1 : -1;
-        int zs = z2 > z1 ? 1 : -1;
-
-        blocks.add(new BlockPos(x1, y1, z1));
-
-        if (dx >= dy && dx >= dz) {
-            int p1 = 2 * dy - dx;
-            int p2 = 2 * dz - dx;
-            while (x1 != x2) {
-                x1 += xs;
-                if (p1 >= 0) {
-                    y1 += ys;
-                    p1 -= 2 * dx;
-                }
-                if (p2 >= 0) {
-                    z1 += zs;
-                    p2 -= 2 * dx;
-                }
-                p1 += 2 * dy;
-                p2 += 2 * dz;
-                blocks.add(new BlockPos(x1, y1, z1));
-            }
-        } else if (dy >= dx && dy >= dz) {
-            int p1 = 2 * dx - dy;
-            int p2 = 2 * dz - dy;
-            while (y1 != y2) {
-                y1 += ys;
-                if (p1 >= 0) {
-                    x1 += xs;
-                    p1 -= 2 * dy;
-                }
-                if (p2 >= 0) {
-                    z1 += zs;
-                    p2 -= 2 * dy;
-                }
-                p1 += 2 * dx;
-                p2 += 2 * dz;
-                blocks.add(new BlockPos(x1, y1, z1));
+    private LineBlockCache lineCache(BlueprintLine line) {
+        Vec3d startWorld = BlueprintGeometry.toWorldCoords(line.start(), origin);
+        Vec3d endWorld = BlueprintGeometry.toWorldCoords(line.end(), origin);
+        BlockPos start = BlockPos.ofFloored(startWorld);
+        BlockPos end = BlockPos.ofFloored(endWorld);
+        Box bounds = new Box(
+                Math.min(start.getX(), end.getX()),
+                Math.min(start.getY(), end.getY()),
+                Math.min(start.getZ(), end.getZ()),
+                Math.max(start.getX(), end.getX()) + 1,
+                Math.max(start.getY(), end.getY()) + 1,
+                Math.max(start.getZ(), end.getZ()) + 1);
+        return new LineBlockCache(start, end, bounds);
+    }
+
+    public record Geometry(long version, long epoch, BlueprintOrigin origin, List<BlueprintPoint> points,
+            List<BlueprintLine> lines) {
+        static final Geometry EMPTY = new Geometry(0, 0, null, List.of(), List.of());
+    }
+
+    public record GeometrySnapshot(Geometry geometry, PackedBlocks pointBlocks, List<LineBlockCache> lineBlocks) {
+        public long version() {
+            return geometry.version();
+        }
+
+        public BlueprintOrigin origin() {
+            return geometry.origin();
+        }
+    }
+
+    public static final class LineBlockCache {
+        private final BlockPos start;
+        private final BlockPos end;
+        private final Box bounds;
+        private volatile PackedBlocks blocks;
+
+        LineBlockCache(BlockPos start, BlockPos end, Box bounds) {
+            this.start = start;
+            this.end = end;
+            this.bounds = bounds;
+        }
+
+        public BlockPos start() {
+            return start;
+        }
+
+        public BlockPos end() {
+            return end;
+        }
+
+        public Box bounds() {
+            return bounds;
+        }
+
+        public PackedBlocks blocks() {
+            PackedBlocks rasterized = blocks;
+            if (rasterized == null) {
+                rasterized = LineRasterizer.rasterize(start, end);
+                blocks = rasterized;
             }
-        } else {
-            int p1 = 2 * dy - dz;
-            int p2 = 2 * dx - dz;
-            while (z1 != z2) {
-                z1 += zs;
-                if (p1 >= 0) {
-                    y1 += ys;
-                    p1 -= 2 * dz;
-                }
-                if (p2 >= 0) {
-                    x1 += xs;
-                    p2 -= 2 * dz;
-                }
-                p1 += 2 * dy;
-                p2 += 2 * dx;
-                blocks.add(new BlockPos(x1, y1, z1));
+            return rasterized;
+        }
+
+        public PackedBlocks blocksIn(BlockBox window) {
+            PackedBlocks rasterized = blocks;
+            if (rasterized != null && window.contains(start) && window.contains(end)) {
+                return rasterized;
             }
+            return LineRasterizer.rasterize(start, end, window);
         }
+    }
 
-        return blocks;
+    private record RegionsSnapshot(long version, BlueprintRegionMap regions) {
     }
 
-    public record LineBlockCache(List<BlockPos> blocks, Box bounds) {
+    private record EdgeKey(BlueprintPoint first, BlueprintPoint second) {
+        static EdgeKey of(BlueprintLine line) {
+            BlueprintPoint start = line.start();
+            BlueprintPoint end = line.end();
+            int order = Double.compare(start.x(), end.x());
+            if (order == 0) {
+                order = Double.compare(start.y(), end.y());
+            }
+            return order <= 0 ? new EdgeKey(start, end) : new EdgeKey(end, start);
+        }
     }
 }
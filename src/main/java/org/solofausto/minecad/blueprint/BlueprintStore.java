@@ -0,0 +1,60 @@
+package org.solofausto.minecad.blueprint;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.PersistentState;
+import net.minecraft.world.PersistentStateType;
+import org.solofausto.minecad.Minecad;
+
+public final class BlueprintStore extends PersistentState {
+    public static final Codec<BlueprintStore> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            BlueprintData.CODEC.listOf().fieldOf("blueprints").forGetter(BlueprintStore::entries))
+            .apply(instance, BlueprintStore::new));
+    private static final PersistentStateType<BlueprintStore> TYPE = new PersistentStateType<>(
+            Minecad.MOD_ID + "_blueprints", BlueprintStore::new, CODEC, null);
+
+    // Entries are only removed by /blueprint delete. A destroyed item cannot be detected,
+    // so its entry stays in the store.
+    private final Map<UUID, BlueprintData> blueprints = new HashMap<>();
+
+    public BlueprintStore() {
+    }
+
+    private BlueprintStore(List<BlueprintData> entries) {
+        for (BlueprintData data : entries) {
+            // Entries that were never written or have no origin have nothing to restore.
+            if (data.revision() > 0 && data.origin().isPresent()) {
+                blueprints.put(data.id(), data);
+            }
+        }
+    }
+
+    public static BlueprintStore get(MinecraftServer server) {
+        return server.getOverworld().getPersistentStateManager().getOrCreate(TYPE);
+    }
+
+    public BlueprintData get(UUID id) {
+        return id == null ? null : blueprints.get(id);
+    }
+
+    public void put(BlueprintData data) {
+        // Geometry is written to disk with the next world save, not on every edit.
+        blueprints.put(data.id(), data);
+        markDirty();
+    }
+
+    public void remove(UUID id) {
+        if (id != null && blueprints.remove(id) != null) {
+            markDirty();
+        }
+    }
+
+    private List<BlueprintData> entries() {
+        return List.copyOf(blueprints.values());
+    }
+}
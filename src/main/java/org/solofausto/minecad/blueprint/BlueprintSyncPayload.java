@@ -0,0 +1,31 @@
+package org.solofausto.minecad.blueprint;
+
+import java.util.UUID;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Uuids;
+import org.solofausto.minecad.Minecad;
+
+public record BlueprintSyncPayload(UUID id, int revision, int part, int parts, byte[] bytes)
+        implements CustomPayload {
+    public static final int MAX_PART_BYTES = 512 * 1024;
+    public static final int MAX_PARTS = 32;
+    public static final CustomPayload.Id<BlueprintSyncPayload> ID = new CustomPayload.Id<>(
+            Identifier.of(Minecad.MOD_ID, "blueprint_sync"));
+    public static final PacketCodec<RegistryByteBuf, BlueprintSyncPayload> CODEC = PacketCodec.tuple(
+            Uuids.PACKET_CODEC, BlueprintSyncPayload::id,
+            PacketCodecs.VAR_INT, BlueprintSyncPayload::revision,
+            PacketCodecs.VAR_INT, BlueprintSyncPayload::part,
+            PacketCodecs.VAR_INT, BlueprintSyncPayload::parts,
+            PacketCodecs.byteArray(MAX_PART_BYTES), BlueprintSyncPayload::bytes,
+            BlueprintSyncPayload::new)
+            .<RegistryByteBuf>cast();
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,136 @@
+package org.solofausto.minecad.blueprint;
+
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+
+final class LineRasterizer {
+    private LineRasterizer() {
+    }
+
+    static PackedBlocks rasterize(BlockPos start, BlockPos end) {
+        int x1 = start.getX();
+        int y1 = start.getY();
+        int z1 = start.getZ();
+        int x2 = end.getX();
+        int y2 = end.getY();
+        int z2 = end.getZ();
+
+        int dx = Math.abs(x2 - x1);
+        int dy = Math.abs(y2 - y1);
+        int dz = Math.abs(z2 - z1);
+
+        int xs = x2 > x1 ? 1 : -1;
+        int ys = y2 > y1 ? 1 : -1;
+        int zs = z2 > z1 ? 1 : -1;
+
+        long[] blocks = new long[Math.max(dx, Math.max(dy, dz)) + 1];
+        int count = 0;
+        blocks[count++] = BlockPos.asLong(x1, y1, z1);
+
+        if (dx >= dy && dx >= dz) {
+            int p1 = 2 * dy - dx;
+            int p2 = 2 * dz - dx;
+            while (x1 != x2) {
+                x1 += xs;
+                if (p1 >= 0) {
+                    y1 += ys;
+                    p1 -= 2 * dx;
+                }
+                if (p2 >= 0) {
+                    z1 += zs;
+                    p2 -= 2 * dx;
+                }
+                p1 += 2 * dy;
+                p2 += 2 * dz;
+                blocks[count++] = BlockPos.asLong(x1, y1, z1);
+            }
+        } else if (dy >= dx && dy >= dz) {
+            int p1 = 2 * dx - dy;
+            int p2 = 2 * dz - dy;
+            while (y1 != y2) {
+                y1 += ys;
+                if (p1 >= 0) {
+                    x1 += xs;
+                    p1 -= 2 * dy;
+                }
+                if (p2 >= 0) {
+                    z1 += zs;
+                    p2 -= 2 * dy;
+                }
+                p1 += 2 * dx;
+                p2 += 2 * dz;
+                blocks[count++] = BlockPos.asLong(x1, y1, z1);
+            }
+        } else {
+            int p1 = 2 * dy - dz;
+            int p2 = 2 * dx - dz;
+            while (z1 != z2) {
+                z1 += zs;
+                if (p1 >= 0) {
+                    y1 += ys;
+                    p1 -= 2 * dz;
+                }
+                if (p2 >= 0) {
+                    x1 += xs;
+                    p2 -= 2 * dz;
+                }
+                p1 += 2 * dy;
+                p2 += 2 * dx;
+                blocks[count++] = BlockPos.asLong(x1, y1, z1);
+            }
+        }
+
+        return PackedBlocks.of(blocks);
+    }
+
+    static PackedBlocks rasterize(BlockPos start, BlockPos end, BlockBox window) {
+        int[] from = { start.getX(), start.getY(), start.getZ() };
+        int[] delta = { end.getX() - from[0], end.getY() - from[1], end.getZ() - from[2] };
+        int[] min = { window.getMinX(), window.getMinY(), window.getMinZ() };
+        int[] max = { window.getMaxX(), window.getMaxY(), window.getMaxZ() };
+        int steps = Math.max(Math.abs(delta[0]), Math.max(Math.abs(delta[1]), Math.abs(delta[2])));
+
+        // Liang-Barsky on the ideal segment, parameterized by Bresenham step. Cells stay within half a
+        // block of it, so a one-block margin keeps every visible step inside [first, last].
+        double low = 0.0;
+        double high = steps;
+        for (int axis = 0; axis < 3; axis++) {
+            if (delta[axis] == 0) {
+                if (from[axis] < min[axis] || from[axis] > max[axis]) {
+                    return PackedBlocks.EMPTY;
+                }
+                continue;
+            }
+            double rate = (double) delta[axis] / steps;
+            double enter = (min[axis] - 1 - from[axis]) / rate;
+            double exit = (max[axis] + 1 - from[axis]) / rate;
+            low = Math.max(low, Math.min(enter, exit));
+            high = Math.min(high, Math.max(enter, exit));
+        }
+        if (low > high) {
+            return PackedBlocks.EMPTY;
+        }
+
+        int first = (int) Math.floor(low);
+        int last = (int) Math.ceil(high);
+        PackedBlocks.Builder blocks = new PackedBlocks.Builder(last - first + 1);
+        for (int step = first; step <= last; step++) {
+            int x = from[0] + offset(delta[0], steps, step);
+            int y = from[1] + offset(delta[1], steps, step);
+            int z = from[2] + offset(delta[2], steps, step);
+            if (x >= min[0] && x <= max[0] && y >= min[1] && y <= max[1] && z >= min[2] && z <= max[2]) {
+                blocks.add(x, y, z);
+            }
+        }
+        return blocks.build();
+    }
+
+    static int offset(int delta, int steps, int step) {
+        if (delta == 0) {
+            return 0;
+        }
+        long length = Math.abs(delta);
+        int travelled = (int) ((2L * length * step + steps) / (2L * steps));
+        return delta > 0 ? travelled : -travelled;
+    }
+}
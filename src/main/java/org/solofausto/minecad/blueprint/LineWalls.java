@@ -0,0 +1,112 @@
+package org.solofausto.minecad.blueprint;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.minecraft.util.math.BlockPos;
+
+// Wall cells of a set of lines, answered per cell or per row from the endpoints with the same
+// stepping as LineRasterizer, so no line is ever rasterized as a whole.
+final class LineWalls {
+    private static final int BAND_SHIFT = PlaneBitmap.TILE_SHIFT;
+    private static final int STRIDE = 5;
+    private static final long NO_SPAN = Long.MIN_VALUE;
+
+    private final int[] segments;
+    private final Int2ObjectOpenHashMap<IntArrayList> bands = new Int2ObjectOpenHashMap<>();
+
+    LineWalls(BlueprintOrigin origin, List<BlueprintSession.LineBlockCache> lines) {
+        segments = new int[lines.size() * STRIDE];
+        for (int i = 0; i < lines.size(); i++) {
+            BlockPos start = lines.get(i).start();
+            BlockPos end = lines.get(i).end();
+            int u = PlanePos.planeU(start, origin);
+            int v = PlanePos.planeV(start, origin);
+            int offset = i * STRIDE;
+            segments[offset] = u;
+            segments[offset + 1] = v;
+            segments[offset + 2] = PlanePos.planeU(end, origin) - u;
+            segments[offset + 3] = PlanePos.planeV(end, origin) - v;
+            segments[offset + 4] = Math.max(Math.abs(end.getX() - start.getX()),
+                    Math.max(Math.abs(end.getY() - start.getY()), Math.abs(end.getZ() - start.getZ())));
+            int lowBand = Math.min(v, v + segments[offset + 3]) >> BAND_SHIFT;
+            int highBand = Math.max(v, v + segments[offset + 3]) >> BAND_SHIFT;
+            for (int band = lowBand; band <= highBand; band++) {
+                bands.computeIfAbsent(band, key -> new IntArrayList()).add(i);
+            }
+        }
+    }
+
+    boolean contains(int u, int v) {
+        IntArrayList band = bands.get(v >> BAND_SHIFT);
+        if (band == null) {
+            return false;
+        }
+        for (int i = 0; i < band.size(); i++) {
+            long span = span(band.getInt(i) * STRIDE, v);
+            if (span != NO_SPAN && u >= spanStart(span) && u <= spanEnd(span)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Wall spans crossing row v, sorted by their first cell.
+    LongArrayList rowSpans(int v) {
+        LongArrayList spans = new LongArrayList();
+        IntArrayList band = bands.get(v >> BAND_SHIFT);
+        if (band != null) {
+            for (int i = 0; i < band.size(); i++) {
+                long span = span(band.getInt(i) * STRIDE, v);
+                if (span != NO_SPAN) {
+                    spans.add(span);
+                }
+            }
+        }
+        Arrays.sort(spans.elements(), 0, spans.size());
+        return spans;
+    }
+
+    static int spanStart(long span) {
+        return (int) (span >> 32);
+    }
+
+    static int spanEnd(long span) {
+        return (int) span;
+    }
+
+    private long span(int offset, int v) {
+        int u0 = segments[offset];
+        int v0 = segments[offset + 1];
+        int du = segments[offset + 2];
+        int dv = segments[offset + 3];
+        int steps = segments[offset + 4];
+        int first;
+        int last;
+        if (dv == 0) {
+            if (v != v0) {
+                return NO_SPAN;
+            }
+            first = 0;
+            last = steps;
+        } else {
+            long length = Math.abs(dv);
+            long row = dv > 0 ? v - v0 : v0 - v;
+            if (row < 0 || row > length) {
+                return NO_SPAN;
+            }
+            // Steps whose rounded offset along v equals row, inverted from LineRasterizer.offset.
+            long divisor = 2L * length;
+            first = (int) Math.max(0L, Math.floorDiv(2L * steps * row - steps + divisor - 1, divisor));
+            last = (int) Math.min(steps, Math.floorDiv(2L * steps * row + steps + divisor - 1, divisor) - 1);
+            if (first > last) {
+                return NO_SPAN;
+            }
+        }
+        int a = u0 + LineRasterizer.offset(du, steps, first);
+        int b = u0 + LineRasterizer.offset(du, steps, last);
+        return ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xFFFFFFFFL);
+    }
+}
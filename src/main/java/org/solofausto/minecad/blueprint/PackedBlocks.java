@@ -0,0 +1,100 @@
+package org.solofausto.minecad.blueprint;
+
+import java.util.Arrays;
+import net.minecraft.util.math.BlockPos;
+
+public final class PackedBlocks {
+    public static final PackedBlocks EMPTY = new PackedBlocks(new long[0], 0);
+
+    private final long[] packed;
+    private final int size;
+
+    private PackedBlocks(long[] packed, int size) {
+        this.packed = packed;
+        this.size = size;
+    }
+
+    static PackedBlocks of(long[] packed) {
+        return packed.length == 0 ? EMPTY : new PackedBlocks(packed, packed.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getLong(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return packed[index];
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public final class Cursor {
+        private int index = -1;
+        private long current;
+
+        public boolean next() {
+            if (index + 1 >= size) {
+                return false;
+            }
+            current = packed[++index];
+            return true;
+        }
+
+        public long packed() {
+            return current;
+        }
+
+        public int x() {
+            return BlockPos.unpackLongX(current);
+        }
+
+        public int y() {
+            return BlockPos.unpackLongY(current);
+        }
+
+        public int z() {
+            return BlockPos.unpackLongZ(current);
+        }
+    }
+
+    static final class Builder {
+        private final int capacity;
+        private long[] packed;
+        private int size;
+
+        Builder(int capacity) {
+            this.capacity = Math.max(capacity, 1);
+            this.packed = new long[this.capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(int x, int y, int z) {
+            if (size == packed.length) {
+                packed = Arrays.copyOf(packed, size * 2);
+            }
+            packed[size++] = BlockPos.asLong(x, y, z);
+        }
+
+        void clear() {
+            // Built instances keep the old array, so it is never reused.
+            packed = new long[capacity];
+            size = 0;
+        }
+
+        PackedBlocks build() {
+            return size == 0 ? EMPTY : new PackedBlocks(packed, size);
+        }
+    }
+}
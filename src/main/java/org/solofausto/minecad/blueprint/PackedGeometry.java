@@ -0,0 +1,467 @@
+package org.solofausto.minecad.blueprint;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.encoding.VarInts;
+import net.minecraft.util.math.MathHelper;
+
+public final class PackedGeometry {
+    public static final PackedGeometry EMPTY = new PackedGeometry(new int[0], 0, new byte[0]);
+
+    private static final double FIXED_POINT_SCALE = 256.0;
+    private static final Codec<int[]> INT_ARRAY_CODEC = Codec.INT_STREAM.xmap(IntStream::toArray, IntStream::of);
+    private static final Codec<byte[]> BYTE_ARRAY_CODEC = Codec.BYTE_BUFFER.xmap(buffer -> {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }, ByteBuffer::wrap);
+
+    public static final Codec<PackedGeometry> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            INT_ARRAY_CODEC.fieldOf("vertices").forGetter(PackedGeometry::vertices),
+            Codec.INT.fieldOf("point_count").forGetter(PackedGeometry::pointCount),
+            BYTE_ARRAY_CODEC.fieldOf("edges").forGetter(PackedGeometry::edges))
+            .apply(instance, PackedGeometry::new));
+    public static final PacketCodec<ByteBuf, PackedGeometry> PACKET_CODEC = PacketCodec.of(
+            PackedGeometry::write, PackedGeometry::read);
+
+    private final int[] vertices;
+    private final int vertexLength;
+    private final int pointCount;
+    private final byte[] edges;
+    private final int edgeLength;
+    private int lastStart;
+
+    public PackedGeometry(int[] vertices, int pointCount, byte[] edges) {
+        this(vertices, vertices.length, pointCount, edges, edges.length, -1);
+    }
+
+    private PackedGeometry(int[] vertices, int vertexLength, int pointCount, byte[] edges, int edgeLength,
+            int lastStart) {
+        this.vertices = vertices;
+        this.vertexLength = vertexLength;
+        this.pointCount = pointCount;
+        this.edges = edges;
+        this.edgeLength = edgeLength;
+        this.lastStart = lastStart;
+    }
+
+    public int[] vertices() {
+        return Arrays.copyOf(vertices, vertexLength);
+    }
+
+    public int pointCount() {
+        return pointCount;
+    }
+
+    public byte[] edges() {
+        return Arrays.copyOf(edges, edgeLength);
+    }
+
+    static PackedGeometry encode(BlueprintSession.Geometry geometry) {
+        List<BlueprintPoint> points = geometry.points();
+        IntArrayList vertices = new IntArrayList(points.size() * 2);
+        Object2IntOpenHashMap<BlueprintPoint> indices = new Object2IntOpenHashMap<>(points.size());
+        indices.defaultReturnValue(-1);
+        for (BlueprintPoint point : points) {
+            indices.putIfAbsent(point, vertices.size() / 2);
+            vertices.add(quantize(point.x()));
+            vertices.add(quantize(point.y()));
+        }
+
+        // Lines are index pairs into the vertex table; endpoints that are not points are appended to it.
+        ByteArrayList edges = new ByteArrayList(geometry.lines().size() * 2);
+        int previous = 0;
+        for (BlueprintLine line : geometry.lines()) {
+            int start = vertexIndex(indices, vertices, line.start());
+            int end = vertexIndex(indices, vertices, line.end());
+            writeVarInt(edges, zigZag(start - previous));
+            writeVarInt(edges, zigZag(end - start));
+            previous = start;
+        }
+        return new PackedGeometry(vertices.toIntArray(), points.size(), edges.toByteArray());
+    }
+
+    PackedGeometry suffixFrom(PackedGeometry base) {
+        // Only geometry that appends to a base without extra endpoint vertices can be sent as a suffix.
+        if (base.pointCount != base.vertexLength / 2 || pointCount < base.pointCount
+                || vertexLength < base.vertexLength || edgeLength < base.edgeLength
+                || !prefixEquals(vertices, base.vertices, base.vertexLength)
+                || !prefixEquals(edges, base.edges, base.edgeLength)) {
+            return null;
+        }
+        return new PackedGeometry(Arrays.copyOfRange(vertices, base.vertexLength, vertexLength),
+                pointCount - base.pointCount, Arrays.copyOfRange(edges, base.edgeLength, edgeLength));
+    }
+
+    PackedGeometry concat(PackedGeometry suffix) {
+        int[] joinedVertices = Arrays.copyOf(vertices, vertexLength + suffix.vertexLength);
+        System.arraycopy(suffix.vertices, 0, joinedVertices, vertexLength, suffix.vertexLength);
+        byte[] joinedEdges = Arrays.copyOf(edges, edgeLength + suffix.edgeLength);
+        System.arraycopy(suffix.edges, 0, joinedEdges, edgeLength, suffix.edgeLength);
+        return new PackedGeometry(joinedVertices, pointCount + suffix.pointCount, joinedEdges);
+    }
+
+    boolean appendInto(BlueprintSession session, PackedGeometry suffix) {
+        // The session must hold exactly this geometry; the suffix is added without restarting it.
+        int baseCount = vertexLength / 2;
+        int addedCount = suffix.vertexLength / 2;
+        List<BlueprintPoint> points = session.getPoints();
+        if (pointCount != baseCount || points.size() != baseCount || suffix.pointCount < 0
+                || suffix.pointCount > addedCount || !equals(session.packGeometry())) {
+            return false;
+        }
+
+        BlueprintPoint[] added = new BlueprintPoint[addedCount];
+        for (int i = 0; i < addedCount; i++) {
+            added[i] = new BlueprintPoint(dequantize(suffix.vertices[i * 2]), dequantize(suffix.vertices[i * 2 + 1]));
+        }
+        for (int i = 0; i < suffix.pointCount; i++) {
+            session.addPoint(added[i]);
+        }
+
+        VarIntReader reader = new VarIntReader(suffix.edges, suffix.edgeLength);
+        int vertexCount = baseCount + addedCount;
+        int previous = lastStart();
+        while (reader.hasNext()) {
+            int start = previous + unZigZag(reader.next());
+            if (!reader.hasNext()) {
+                return false;
+            }
+            int end = start + unZigZag(reader.next());
+            if (start < 0 || start >= vertexCount || end < 0 || end >= vertexCount) {
+                return false;
+            }
+            session.addLine(new BlueprintLine(vertex(points, added, start), vertex(points, added, end)));
+            previous = start;
+        }
+        return true;
+    }
+
+    boolean endsWith(PackedGeometry base, PackedGeometry suffix) {
+        return pointCount == base.pointCount + suffix.pointCount
+                && vertexLength == base.vertexLength + suffix.vertexLength
+                && edgeLength == base.edgeLength + suffix.edgeLength
+                && Arrays.equals(vertices, base.vertexLength, vertexLength, suffix.vertices, 0, suffix.vertexLength)
+                && Arrays.equals(edges, base.edgeLength, edgeLength, suffix.edges, 0, suffix.edgeLength);
+    }
+
+    public void decodeInto(BlueprintSession session) {
+        int vertexCount = vertexLength / 2;
+        int points = MathHelper.clamp(pointCount, 0, vertexCount);
+        BlueprintPoint[] decoded = new BlueprintPoint[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            decoded[i] = new BlueprintPoint(dequantize(vertices[i * 2]), dequantize(vertices[i * 2 + 1]));
+        }
+        for (int i = 0; i < points; i++) {
+            session.addPoint(decoded[i]);
+        }
+
+        VarIntReader reader = new VarIntReader(edges, edgeLength);
+        int previous = 0;
+        boolean exact = points == vertexCount;
+        while (reader.hasNext()) {
+            int start = previous + unZigZag(reader.next());
+            if (!reader.hasNext()) {
+                exact = false;
+                break;
+            }
+            int end = start + unZigZag(reader.next());
+            if (start < 0 || start >= vertexCount || end < 0 || end >= vertexCount) {
+                exact = false;
+                break;
+            }
+            exact &= session.addLine(new BlueprintLine(decoded[start], decoded[end]));
+            previous = start;
+        }
+        if (exact) {
+            lastStart = previous;
+            session.adoptPackedGeometry(this, previous);
+        }
+    }
+
+    private int lastStart() {
+        // Edge starts are delta coded, so appending needs the start index of the last edge.
+        int start = lastStart;
+        if (start < 0) {
+            start = 0;
+            VarIntReader reader = new VarIntReader(edges, edgeLength);
+            while (reader.hasNext()) {
+                start += unZigZag(reader.next());
+                if (reader.hasNext()) {
+                    reader.next();
+                }
+            }
+            lastStart = start;
+        }
+        return start;
+    }
+
+    private static BlueprintPoint vertex(List<BlueprintPoint> points, BlueprintPoint[] added, int index) {
+        return index < points.size() ? points.get(index) : added[index - points.size()];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof PackedGeometry geometry && pointCount == geometry.pointCount
+                && Arrays.equals(vertices, 0, vertexLength, geometry.vertices, 0, geometry.vertexLength)
+                && Arrays.equals(edges, 0, edgeLength, geometry.edges, 0, geometry.edgeLength);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = pointCount;
+        for (int i = 0; i < vertexLength; i++) {
+            hash = 31 * hash + vertices[i];
+        }
+        for (int i = 0; i < edgeLength; i++) {
+            hash = 31 * hash + edges[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "PackedGeometry[vertices=" + vertexLength / 2 + ", points=" + pointCount + ", edges="
+                + edgeLength + "]";
+    }
+
+    private static void write(PackedGeometry geometry, ByteBuf buf) {
+        // Coordinates are delta coded per axis so neighbouring points cost one or two bytes each.
+        int[] vertices = geometry.vertices;
+        int length = geometry.vertexLength;
+        VarInts.write(buf, length / 2);
+        int previousX = 0;
+        int previousY = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            VarInts.write(buf, zigZag(vertices[i] - previousX));
+            VarInts.write(buf, zigZag(vertices[i + 1] - previousY));
+            previousX = vertices[i];
+            previousY = vertices[i + 1];
+        }
+        VarInts.write(buf, geometry.pointCount);
+        VarInts.write(buf, geometry.edgeLength);
+        buf.writeBytes(geometry.edges, 0, geometry.edgeLength);
+    }
+
+    private static PackedGeometry read(ByteBuf buf) {
+        int vertexCount = VarInts.read(buf);
+        if (vertexCount < 0 || vertexCount * 2L > buf.readableBytes()) {
+            throw new DecoderException("Invalid blueprint vertex count " + vertexCount);
+        }
+        int[] vertices = new int[vertexCount * 2];
+        int previousX = 0;
+        int previousY = 0;
+        for (int i = 0; i < vertices.length; i += 2) {
+            previousX += unZigZag(VarInts.read(buf));
+            previousY += unZigZag(VarInts.read(buf));
+            vertices[i] = previousX;
+            vertices[i + 1] = previousY;
+        }
+        int pointCount = VarInts.read(buf);
+        int edgeLength = VarInts.read(buf);
+        if (edgeLength < 0 || edgeLength > buf.readableBytes()) {
+            throw new DecoderException("Invalid blueprint edge length " + edgeLength);
+        }
+        byte[] edges = new byte[edgeLength];
+        buf.readBytes(edges);
+        return new PackedGeometry(vertices, pointCount, edges);
+    }
+
+    private static boolean prefixEquals(int[] values, int[] prefix, int length) {
+        // Arrays shared with an encoder only ever grow past published lengths.
+        return values == prefix || Arrays.equals(values, 0, length, prefix, 0, length);
+    }
+
+    private static boolean prefixEquals(byte[] values, byte[] prefix, int length) {
+        return values == prefix || Arrays.equals(values, 0, length, prefix, 0, length);
+    }
+
+    private static int vertexIndex(Object2IntOpenHashMap<BlueprintPoint> indices, IntArrayList vertices,
+            BlueprintPoint point) {
+        int index = indices.getInt(point);
+        if (index < 0) {
+            index = vertices.size() / 2;
+            indices.put(point, index);
+            vertices.add(quantize(point.x()));
+            vertices.add(quantize(point.y()));
+        }
+        return index;
+    }
+
+    static int quantize(double value) {
+        // Flooring keeps every coordinate in the same block cell after a round trip.
+        return (int) Math.floor(value * FIXED_POINT_SCALE);
+    }
+
+    static double dequantize(int value) {
+        return value / FIXED_POINT_SCALE;
+    }
+
+    // The value a point takes after being packed and decoded, so it still matches decoded vertices.
+    static BlueprintPoint snap(BlueprintPoint point) {
+        return new BlueprintPoint(dequantize(quantize(point.x())), dequantize(quantize(point.y())));
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(ByteArrayList bytes, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes.add((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        bytes.add((byte) value);
+    }
+
+    static final class Encoder {
+        private int[] vertices = new int[0];
+        private int vertexLength;
+        private byte[] edges = new byte[0];
+        private int edgeLength;
+        private int pointCount;
+        private int lineCount;
+        private int previousStart;
+        private long epoch = -1;
+        private boolean shared;
+        private PackedGeometry published = EMPTY;
+
+        PackedGeometry update(BlueprintSession.Geometry geometry, ToIntFunction<BlueprintPoint> pointIndex) {
+            List<BlueprintPoint> points = geometry.points();
+            List<BlueprintLine> lines = geometry.lines();
+            if (epoch != geometry.epoch() || pointCount > points.size() || lineCount > lines.size()) {
+                reset(geometry.epoch());
+            }
+            if (pointCount == points.size() && lineCount == lines.size()) {
+                return published;
+            }
+
+            // Only the points and lines added since the last update are encoded.
+            for (int i = pointCount; i < points.size(); i++) {
+                BlueprintPoint point = points.get(i);
+                appendVertex(quantize(point.x()), quantize(point.y()));
+            }
+            pointCount = points.size();
+            for (int i = lineCount; i < lines.size(); i++) {
+                BlueprintLine line = lines.get(i);
+                int start = pointIndex.applyAsInt(line.start());
+                int end = pointIndex.applyAsInt(line.end());
+                if (start < 0 || end < 0) {
+                    // Endpoints outside the point list need the full vertex table; rebuild on every update.
+                    epoch = -1;
+                    published = encode(geometry);
+                    return published;
+                }
+                appendVarInt(zigZag(start - previousStart));
+                appendVarInt(zigZag(end - start));
+                previousStart = start;
+            }
+            lineCount = lines.size();
+            published = new PackedGeometry(vertices, vertexLength, pointCount, edges, edgeLength, previousStart);
+            return published;
+        }
+
+        void adopt(PackedGeometry geometry, long epoch, int lineCount, int previousStart) {
+            this.shared = true;
+            this.vertices = geometry.vertices;
+            this.vertexLength = geometry.vertexLength;
+            this.edges = geometry.edges;
+            this.edgeLength = geometry.edgeLength;
+            this.pointCount = geometry.pointCount;
+            this.lineCount = lineCount;
+            this.previousStart = previousStart;
+            this.epoch = epoch;
+            this.published = geometry;
+        }
+
+        void clear() {
+            reset(-1);
+        }
+
+        private void reset(long epoch) {
+            // Fresh arrays keep previously published geometry intact.
+            vertices = new int[64];
+            vertexLength = 0;
+            edges = new byte[64];
+            edgeLength = 0;
+            pointCount = 0;
+            lineCount = 0;
+            previousStart = 0;
+            this.epoch = epoch;
+            shared = false;
+            published = EMPTY;
+        }
+
+        private void unshare() {
+            // Adopted arrays may belong to another session's encoder, so they are copied before the first append.
+            if (shared) {
+                vertices = Arrays.copyOf(vertices, Math.max(64, vertexLength * 2));
+                edges = Arrays.copyOf(edges, Math.max(64, edgeLength * 2));
+                shared = false;
+            }
+        }
+
+        private void appendVertex(int x, int y) {
+            unshare();
+            if (vertexLength + 2 > vertices.length) {
+                vertices = Arrays.copyOf(vertices, Math.max(64, vertices.length * 2));
+            }
+            vertices[vertexLength++] = x;
+            vertices[vertexLength++] = y;
+        }
+
+        private void appendVarInt(int value) {
+            unshare();
+            if (edgeLength + 5 > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(64, edges.length * 2));
+            }
+            while ((value & ~0x7F) != 0) {
+                edges[edgeLength++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            edges[edgeLength++] = (byte) value;
+        }
+    }
+
+    private static final class VarIntReader {
+        private final byte[] bytes;
+        private final int length;
+        private int position;
+
+        VarIntReader(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        boolean hasNext() {
+            return position < length;
+        }
+
+        int next() {
+            int value = 0;
+            for (int shift = 0; shift < 32 && position < length; shift += 7) {
+                byte current = bytes[position++];
+                value |= (current & 0x7F) << shift;
+                if (current >= 0) {
+                    return value;
+                }
+            }
+            return -1;
+        }
+    }
+}
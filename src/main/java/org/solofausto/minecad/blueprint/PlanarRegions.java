@@ -0,0 +1,320 @@
+package org.solofausto.minecad.blueprint;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class PlanarRegions {
+    private static final double EPSILON = 1.0E-9;
+    private static final double SNAP_SCALE = 1.0E6;
+
+    private PlanarRegions() {
+    }
+
+    static List<BlueprintRegion> detect(BlueprintOrigin origin, List<BlueprintLine> lines,
+            List<BlueprintSession.LineBlockCache> lineBlocks) {
+        if (origin == null || lines.isEmpty()) {
+            return List.of();
+        }
+
+        // Wall cells are excluded from regions exactly as in the raster engine.
+        LineWalls walls = new LineWalls(origin, lineBlocks);
+
+        List<List<Split>> splits = splitSegments(lines);
+        Graph graph = new Graph();
+        LongOpenHashSet edgeKeys = new LongOpenHashSet();
+        for (List<Split> segmentSplits : splits) {
+            segmentSplits.sort(Comparator.comparingDouble(Split::t));
+            int previous = -1;
+            for (Split split : segmentSplits) {
+                int vertex = graph.vertex(split.x(), split.y());
+                if (previous >= 0 && previous != vertex
+                        && edgeKeys.add(edgeKey(Math.min(previous, vertex), Math.max(previous, vertex)))) {
+                    graph.addEdge(previous, vertex);
+                }
+                previous = vertex;
+            }
+        }
+
+        return graph.traceRegions(origin, walls);
+    }
+
+    private static List<List<Split>> splitSegments(List<BlueprintLine> lines) {
+        int count = lines.size();
+        List<List<Split>> splits = new ArrayList<>(count);
+        for (BlueprintLine line : lines) {
+            List<Split> segmentSplits = new ArrayList<>();
+            segmentSplits.add(new Split(0.0, line.start().x(), line.start().y()));
+            segmentSplits.add(new Split(1.0, line.end().x(), line.end().y()));
+            splits.add(segmentSplits);
+        }
+
+        // Segments are swept in order of their left edge, so only pairs with overlapping x-extents are tested.
+        double[] minX = new double[count];
+        double[] maxX = new double[count];
+        IntArrayList order = new IntArrayList(count);
+        for (int i = 0; i < count; i++) {
+            BlueprintLine line = lines.get(i);
+            minX[i] = Math.min(line.start().x(), line.end().x());
+            maxX[i] = Math.max(line.start().x(), line.end().x());
+            order.add(i);
+        }
+        order.sort((a, b) -> Double.compare(minX[a], minX[b]));
+
+        for (int first = 0; first < count; first++) {
+            int i = order.getInt(first);
+            for (int second = first + 1; second < count; second++) {
+                int j = order.getInt(second);
+                if (minX[j] > maxX[i] + EPSILON) {
+                    break;
+                }
+                intersect(lines.get(i), lines.get(j), splits.get(i), splits.get(j));
+            }
+        }
+        return splits;
+    }
+
+    private static void intersect(BlueprintLine a, BlueprintLine b, List<Split> aSplits, List<Split> bSplits) {
+        double px = a.start().x();
+        double py = a.start().y();
+        double rx = a.end().x() - px;
+        double ry = a.end().y() - py;
+        double qx = b.start().x();
+        double qy = b.start().y();
+        double sx = b.end().x() - qx;
+        double sy = b.end().y() - qy;
+        if (Math.max(py, py + ry) < Math.min(qy, qy + sy) - EPSILON
+                || Math.max(qy, qy + sy) < Math.min(py, py + ry) - EPSILON) {
+            return;
+        }
+
+        double denom = cross(rx, ry, sx, sy);
+        double dqx = qx - px;
+        double dqy = qy - py;
+        if (Math.abs(denom) < EPSILON) {
+            if (Math.abs(cross(dqx, dqy, rx, ry)) >= EPSILON) {
+                return;
+            }
+            addIfOnSegment(aSplits, px, py, rx, ry, b.start().x(), b.start().y());
+            addIfOnSegment(aSplits, px, py, rx, ry, b.end().x(), b.end().y());
+            addIfOnSegment(bSplits, qx, qy, sx, sy, a.start().x(), a.start().y());
+            addIfOnSegment(bSplits, qx, qy, sx, sy, a.end().x(), a.end().y());
+            return;
+        }
+
+        double t = cross(dqx, dqy, sx, sy) / denom;
+        double u = cross(dqx, dqy, rx, ry) / denom;
+        if (t < -EPSILON || t > 1.0 + EPSILON || u < -EPSILON || u > 1.0 + EPSILON) {
+            return;
+        }
+        double x = px + t * rx;
+        double y = py + t * ry;
+        aSplits.add(new Split(t, x, y));
+        bSplits.add(new Split(u, x, y));
+    }
+
+    private static void addIfOnSegment(List<Split> splits, double px, double py, double rx, double ry,
+            double x, double y) {
+        double lengthSq = rx * rx + ry * ry;
+        if (lengthSq < EPSILON) {
+            return;
+        }
+        double t = ((x - px) * rx + (y - py) * ry) / lengthSq;
+        if (t > EPSILON && t < 1.0 - EPSILON) {
+            splits.add(new Split(t, x, y));
+        }
+    }
+
+    private static double cross(double ax, double ay, double bx, double by) {
+        return ax * by - ay * bx;
+    }
+
+    private static long edgeKey(int a, int b) {
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    static boolean contains(double[][] rings, double x, double y) {
+        boolean inside = false;
+        for (double[] ring : rings) {
+            int size = ring.length / 2;
+            for (int i = 0, j = size - 1; i < size; j = i++) {
+                double yi = ring[i * 2 + 1];
+                double yj = ring[j * 2 + 1];
+                if ((yi > y) != (yj > y)) {
+                    double xi = ring[i * 2];
+                    double xj = ring[j * 2];
+                    double crossing = xi + (y - yi) * (xj - xi) / (yj - yi);
+                    if (x < crossing) {
+                        inside = !inside;
+                    }
+                }
+            }
+        }
+        return inside;
+    }
+
+    private static double signedArea(double[] ring) {
+        int size = ring.length / 2;
+        double area = 0.0;
+        for (int i = 0, j = size - 1; i < size; j = i++) {
+            area += ring[j * 2] * ring[i * 2 + 1] - ring[i * 2] * ring[j * 2 + 1];
+        }
+        return area * 0.5;
+    }
+
+    private record Split(double t, double x, double y) {
+    }
+
+    private record VertexKey(long x, long y) {
+    }
+
+    private static final class Graph {
+        private final Map<VertexKey, Integer> vertexIds = new HashMap<>();
+        private final List<double[]> vertices = new ArrayList<>();
+        private final IntArrayList halfEdgeTargets = new IntArrayList();
+        private final List<IntArrayList> outgoing = new ArrayList<>();
+
+        int vertex(double x, double y) {
+            VertexKey key = new VertexKey(Math.round(x * SNAP_SCALE), Math.round(y * SNAP_SCALE));
+            Integer id = vertexIds.get(key);
+            if (id != null) {
+                return id;
+            }
+            int created = vertices.size();
+            vertices.add(new double[] { x, y });
+            outgoing.add(new IntArrayList());
+            vertexIds.put(key, created);
+            return created;
+        }
+
+        void addEdge(int from, int to) {
+            int halfEdge = halfEdgeTargets.size();
+            halfEdgeTargets.add(to);
+            halfEdgeTargets.add(from);
+            outgoing.get(from).add(halfEdge);
+            outgoing.get(to).add(halfEdge + 1);
+        }
+
+        List<BlueprintRegion> traceRegions(BlueprintOrigin origin, LineWalls walls) {
+            int halfEdgeCount = halfEdgeTargets.size();
+            if (halfEdgeCount == 0) {
+                return List.of();
+            }
+
+            int[] positionInVertex = new int[halfEdgeCount];
+            for (int vertex = 0; vertex < outgoing.size(); vertex++) {
+                IntArrayList edges = outgoing.get(vertex);
+                double[] from = vertices.get(vertex);
+                edges.sort((a, b) -> Double.compare(angle(from, a), angle(from, b)));
+                for (int i = 0; i < edges.size(); i++) {
+                    positionInVertex[edges.getInt(i)] = i;
+                }
+            }
+
+            int[] component = components();
+            boolean[] traced = new boolean[halfEdgeCount];
+            List<Cycle> faces = new ArrayList<>();
+            List<Cycle> holes = new ArrayList<>();
+            for (int start = 0; start < halfEdgeCount; start++) {
+                if (traced[start]) {
+                    continue;
+                }
+                IntArrayList ringVertices = new IntArrayList();
+                int halfEdge = start;
+                do {
+                    traced[halfEdge] = true;
+                    ringVertices.add(source(halfEdge));
+                    int target = halfEdgeTargets.getInt(halfEdge);
+                    IntArrayList around = outgoing.get(target);
+                    int twinPosition = positionInVertex[halfEdge ^ 1];
+                    halfEdge = around.getInt((twinPosition - 1 + around.size()) % around.size());
+                } while (halfEdge != start);
+
+                double[] ring = new double[ringVertices.size() * 2];
+                for (int i = 0; i < ringVertices.size(); i++) {
+                    double[] point = vertices.get(ringVertices.getInt(i));
+                    ring[i * 2] = point[0];
+                    ring[i * 2 + 1] = point[1];
+                }
+                double area = signedArea(ring);
+                Cycle cycle = new Cycle(ring, Math.abs(area), component[ringVertices.getInt(0)]);
+                if (area > EPSILON) {
+                    faces.add(cycle);
+                } else if (area < -EPSILON) {
+                    holes.add(cycle);
+                }
+            }
+
+            List<List<double[]>> faceRings = new ArrayList<>(faces.size());
+            for (Cycle face : faces) {
+                List<double[]> rings = new ArrayList<>();
+                rings.add(face.ring());
+                faceRings.add(rings);
+            }
+            for (Cycle hole : holes) {
+                int best = -1;
+                for (int i = 0; i < faces.size(); i++) {
+                    Cycle face = faces.get(i);
+                    if (face.component() == hole.component()
+                            || !contains(new double[][] { face.ring() }, hole.ring()[0], hole.ring()[1])) {
+                        continue;
+                    }
+                    if (best < 0 || face.area() < faces.get(best).area()) {
+                        best = i;
+                    }
+                }
+                if (best >= 0) {
+                    faceRings.get(best).add(hole.ring());
+                }
+            }
+
+            List<BlueprintRegion> regions = new ArrayList<>(faces.size());
+            for (List<double[]> rings : faceRings) {
+                regions.add(new PolygonRegion(rings.toArray(new double[0][]), origin, walls));
+            }
+            return regions;
+        }
+
+        private int source(int halfEdge) {
+            return halfEdgeTargets.getInt(halfEdge ^ 1);
+        }
+
+        private double angle(double[] from, int halfEdge) {
+            double[] to = vertices.get(halfEdgeTargets.getInt(halfEdge));
+            return Math.atan2(to[1] - from[1], to[0] - from[0]);
+        }
+
+        private int[] components() {
+            int[] parent = new int[vertices.size()];
+            for (int i = 0; i < parent.length; i++) {
+                parent[i] = i;
+            }
+            for (int halfEdge = 0; halfEdge < halfEdgeTargets.size(); halfEdge += 2) {
+                int a = find(parent, halfEdgeTargets.getInt(halfEdge));
+                int b = find(parent, halfEdgeTargets.getInt(halfEdge + 1));
+                if (a != b) {
+                    parent[a] = b;
+                }
+            }
+            for (int i = 0; i < parent.length; i++) {
+                parent[i] = find(parent, i);
+            }
+            return parent;
+        }
+
+        private static int find(int[] parent, int node) {
+            while (parent[node] != node) {
+                parent[node] = parent[parent[node]];
+                node = parent[node];
+            }
+            return node;
+        }
+    }
+
+    private record Cycle(double[] ring, double area, int component) {
+    }
+}
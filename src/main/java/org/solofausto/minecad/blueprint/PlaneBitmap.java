@@ -0,0 +1,120 @@
+package org.solofausto.minecad.blueprint;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+public final class PlaneBitmap {
+    static final int TILE_SHIFT = 6;
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+    static final int TILE_MASK = TILE_SIZE - 1;
+
+    private final Long2ObjectOpenHashMap<long[]> tiles = new Long2ObjectOpenHashMap<>();
+
+    public boolean get(int u, int v) {
+        long[] tile = tiles.get(tileKey(u >> TILE_SHIFT, v >> TILE_SHIFT));
+        return tile != null && (tile[v & TILE_MASK] & (1L << (u & TILE_MASK))) != 0;
+    }
+
+    public void set(int u, int v) {
+        tileOrCreate(u >> TILE_SHIFT, v >> TILE_SHIFT)[v & TILE_MASK] |= 1L << (u & TILE_MASK);
+    }
+
+    public boolean isEmpty() {
+        return tiles.isEmpty();
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long[] tile : tiles.values()) {
+            for (long row : tile) {
+                count += Long.bitCount(row);
+            }
+        }
+        return count;
+    }
+
+    public void forEach(CellConsumer consumer) {
+        for (Long2ObjectMap.Entry<long[]> entry : tiles.long2ObjectEntrySet()) {
+            int baseU = tileU(entry.getLongKey()) << TILE_SHIFT;
+            int baseV = tileV(entry.getLongKey()) << TILE_SHIFT;
+            long[] tile = entry.getValue();
+            for (int row = 0; row < TILE_SIZE; row++) {
+                long bits = tile[row];
+                while (bits != 0) {
+                    consumer.accept(baseU + Long.numberOfTrailingZeros(bits), baseV + row);
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    void or(PlaneBitmap other) {
+        for (Long2ObjectMap.Entry<long[]> entry : other.tiles.long2ObjectEntrySet()) {
+            long[] source = entry.getValue();
+            long[] target = tiles.get(entry.getLongKey());
+            if (target == null) {
+                tiles.put(entry.getLongKey(), source.clone());
+                continue;
+            }
+            for (int row = 0; row < TILE_SIZE; row++) {
+                target[row] |= source[row];
+            }
+        }
+    }
+
+    void andNot(PlaneBitmap other) {
+        for (Long2ObjectMap.Entry<long[]> entry : other.tiles.long2ObjectEntrySet()) {
+            long[] target = tiles.get(entry.getLongKey());
+            if (target == null) {
+                continue;
+            }
+            long[] source = entry.getValue();
+            for (int row = 0; row < TILE_SIZE; row++) {
+                target[row] &= ~source[row];
+            }
+        }
+    }
+
+    long[] tile(int tileU, int tileV) {
+        return tiles.get(tileKey(tileU, tileV));
+    }
+
+    long[] tileOrCreate(int tileU, int tileV) {
+        long key = tileKey(tileU, tileV);
+        long[] tile = tiles.get(key);
+        if (tile == null) {
+            tile = new long[TILE_SIZE];
+            tiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    static long tileKey(int tileU, int tileV) {
+        return ((long) tileU << 32) | (tileV & 0xFFFFFFFFL);
+    }
+
+    static long cellKey(int u, int v) {
+        return tileKey(u, v);
+    }
+
+    static int cellU(long key) {
+        return tileU(key);
+    }
+
+    static int cellV(long key) {
+        return tileV(key);
+    }
+
+    static int tileU(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int tileV(long key) {
+        return (int) key;
+    }
+
+    @FunctionalInterface
+    public interface CellConsumer {
+        void accept(int u, int v);
+    }
+}
@@ -0,0 +1,85 @@
+package org.solofausto.minecad.blueprint;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+final class PlaneLabels {
+    private static final int TILE_SHIFT = PlaneBitmap.TILE_SHIFT;
+    private static final int TILE_MASK = PlaneBitmap.TILE_MASK;
+
+    private final Long2ObjectOpenHashMap<int[]> tiles;
+    private final LongOpenHashSet owned;
+
+    PlaneLabels() {
+        this.tiles = new Long2ObjectOpenHashMap<>();
+        this.owned = new LongOpenHashSet();
+    }
+
+    private PlaneLabels(Long2ObjectOpenHashMap<int[]> tiles) {
+        this.tiles = tiles;
+        this.owned = null;
+    }
+
+    int get(int u, int v) {
+        int[] tile = tiles.get(PlaneBitmap.tileKey(u >> TILE_SHIFT, v >> TILE_SHIFT));
+        return tile == null ? 0 : tile[index(u, v)];
+    }
+
+    void set(int u, int v, int label) {
+        if (owned == null) {
+            throw new IllegalStateException("Frozen label grid");
+        }
+        long key = PlaneBitmap.tileKey(u >> TILE_SHIFT, v >> TILE_SHIFT);
+        int[] tile = tiles.get(key);
+        if (tile == null) {
+            if (label == 0) {
+                return;
+            }
+            tile = new int[1 << (TILE_SHIFT * 2)];
+            tiles.put(key, tile);
+            owned.add(key);
+        } else if (!owned.contains(key)) {
+            // Tiles are shared with frozen copies until first written.
+            tile = tile.clone();
+            tiles.put(key, tile);
+            owned.add(key);
+        }
+        tile[index(u, v)] = label;
+    }
+
+    PlaneLabels freeze() {
+        if (owned == null) {
+            return this;
+        }
+        owned.clear();
+        return new PlaneLabels(new Long2ObjectOpenHashMap<>(tiles));
+    }
+
+    void forEach(int label, int minU, int maxU, int minV, int maxV, PlaneBitmap.CellConsumer consumer) {
+        for (int tileV = minV >> TILE_SHIFT; tileV <= maxV >> TILE_SHIFT; tileV++) {
+            for (int tileU = minU >> TILE_SHIFT; tileU <= maxU >> TILE_SHIFT; tileU++) {
+                int[] tile = tiles.get(PlaneBitmap.tileKey(tileU, tileV));
+                if (tile == null) {
+                    continue;
+                }
+                int baseU = tileU << TILE_SHIFT;
+                int baseV = tileV << TILE_SHIFT;
+                int fromV = Math.max(minV, baseV);
+                int toV = Math.min(maxV, baseV + TILE_MASK);
+                int fromU = Math.max(minU, baseU);
+                int toU = Math.min(maxU, baseU + TILE_MASK);
+                for (int v = fromV; v <= toV; v++) {
+                    for (int u = fromU; u <= toU; u++) {
+                        if (tile[index(u, v)] == label) {
+                            consumer.accept(u, v);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int index(int u, int v) {
+        return ((v & TILE_MASK) << TILE_SHIFT) | (u & TILE_MASK);
+    }
+}
@@ -0,0 +1,54 @@
+package org.solofausto.minecad.blueprint;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+
+public record PlanePos(int u, int v) {
+    public static PlanePos of(BlueprintPoint point) {
+        return new PlanePos(MathHelper.floor(point.x()), MathHelper.floor(point.y()));
+    }
+
+    public static PlanePos fromWorld(BlockPos pos, BlueprintOrigin origin) {
+        return new PlanePos(planeU(pos, origin), planeV(pos, origin));
+    }
+
+    public static int planeU(BlockPos pos, BlueprintOrigin origin) {
+        return planeU(pos.getX(), pos.getY(), pos.getZ(), origin);
+    }
+
+    public static int planeU(int x, int y, int z, BlueprintOrigin origin) {
+        BlockPos originPos = origin.blockPos();
+        return switch (origin.face()) {
+            case NORTH, SOUTH, UP, DOWN -> x - originPos.getX();
+            case EAST, WEST -> z - originPos.getZ();
+        };
+    }
+
+    public static int planeV(BlockPos pos, BlueprintOrigin origin) {
+        return planeV(pos.getX(), pos.getY(), pos.getZ(), origin);
+    }
+
+    public static int planeV(int x, int y, int z, BlueprintOrigin origin) {
+        BlockPos originPos = origin.blockPos();
+        return switch (origin.face()) {
+            case NORTH, SOUTH, EAST, WEST -> y - originPos.getY();
+            case UP, DOWN -> z - originPos.getZ();
+        };
+    }
+
+    public BlockPos toWorldBlock(BlueprintOrigin origin) {
+        return toWorldBlock(u, v, origin);
+    }
+
+    public static BlockPos toWorldBlock(int u, int v, BlueprintOrigin origin) {
+        BlockPos originPos = origin.blockPos();
+        return switch (origin.face()) {
+            case NORTH -> new BlockPos(originPos.getX() + u, originPos.getY() + v, originPos.getZ());
+            case SOUTH -> new BlockPos(originPos.getX() + u, originPos.getY() + v, originPos.getZ() + 1);
+            case EAST -> new BlockPos(originPos.getX() + 1, originPos.getY() + v, originPos.getZ() + u);
+            case WEST -> new BlockPos(originPos.getX(), originPos.getY() + v, originPos.getZ() + u);
+            case UP -> new BlockPos(originPos.getX() + u, originPos.getY() + 1, originPos.getZ() + v);
+            case DOWN -> new BlockPos(originPos.getX() + u, originPos.getY(), originPos.getZ() + v);
+        };
+    }
+}
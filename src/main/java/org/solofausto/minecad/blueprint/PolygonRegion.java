@@ -0,0 +1,126 @@
+package org.solofausto.minecad.blueprint;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+
+final class PolygonRegion implements BlueprintRegion {
+    private final double[][] rings;
+    private final BlueprintOrigin origin;
+    private final LineWalls walls;
+    private final double minX;
+    private final double maxX;
+    private final double minY;
+    private final double maxY;
+    private final Box bounds;
+    private volatile int cellCount = -1;
+    private volatile List<BlockPos> worldBlocks;
+
+    PolygonRegion(double[][] rings, BlueprintOrigin origin, LineWalls walls) {
+        this.rings = rings;
+        this.origin = origin;
+        this.walls = walls;
+        double[] outer = rings[0];
+        double lowX = Double.POSITIVE_INFINITY;
+        double highX = Double.NEGATIVE_INFINITY;
+        double lowY = Double.POSITIVE_INFINITY;
+        double highY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < outer.length; i += 2) {
+            lowX = Math.min(lowX, outer[i]);
+            highX = Math.max(highX, outer[i]);
+            lowY = Math.min(lowY, outer[i + 1]);
+            highY = Math.max(highY, outer[i + 1]);
+        }
+        this.minX = lowX;
+        this.maxX = highX;
+        this.minY = lowY;
+        this.maxY = highY;
+        this.bounds = BlueprintRegions.worldBounds(origin,
+                (int) Math.floor(minX), (int) Math.floor(maxX), (int) Math.floor(minY), (int) Math.floor(maxY));
+    }
+
+    @Override
+    public boolean contains(PlanePos pos) {
+        double x = pos.u() + 0.5;
+        double y = pos.v() + 0.5;
+        if (x < minX || x > maxX || y < minY || y > maxY || walls.contains(pos.u(), pos.v())) {
+            return false;
+        }
+        return PlanarRegions.contains(rings, x, y);
+    }
+
+    @Override
+    public int cellCount() {
+        int count = cellCount;
+        if (count < 0) {
+            int[] counter = new int[1];
+            forEachCell((u, v) -> counter[0]++);
+            count = counter[0];
+            cellCount = count;
+        }
+        return count;
+    }
+
+    @Override
+    public List<BlockPos> worldBlocks() {
+        List<BlockPos> blocks = worldBlocks;
+        if (blocks == null) {
+            List<BlockPos> collected = new ArrayList<>(Math.max(cellCount, 0));
+            forEachCell((u, v) -> collected.add(PlanePos.toWorldBlock(u, v, origin)));
+            blocks = Collections.unmodifiableList(collected);
+            worldBlocks = blocks;
+        }
+        return blocks;
+    }
+
+    @Override
+    public Box bounds() {
+        return bounds;
+    }
+
+    void forEachCell(PlaneBitmap.CellConsumer consumer) {
+        DoubleArrayList crossings = new DoubleArrayList();
+        int firstRow = (int) Math.floor(minY - 0.5);
+        int lastRow = (int) Math.ceil(maxY - 0.5);
+        for (int v = firstRow; v <= lastRow; v++) {
+            double y = v + 0.5;
+            crossings.clear();
+            for (double[] ring : rings) {
+                int size = ring.length / 2;
+                for (int i = 0, j = size - 1; i < size; j = i++) {
+                    double yi = ring[i * 2 + 1];
+                    double yj = ring[j * 2 + 1];
+                    if ((yi > y) != (yj > y)) {
+                        double xi = ring[i * 2];
+                        double xj = ring[j * 2];
+                        crossings.add(xi + (y - yi) * (xj - xi) / (yj - yi));
+                    }
+                }
+            }
+            if (crossings.isEmpty()) {
+                continue;
+            }
+            Arrays.sort(crossings.elements(), 0, crossings.size());
+            LongArrayList spans = walls.rowSpans(v);
+            int span = 0;
+            for (int i = 0; i + 1 < crossings.size(); i += 2) {
+                int firstU = (int) Math.ceil(crossings.getDouble(i) - 0.5);
+                int lastU = (int) Math.ceil(crossings.getDouble(i + 1) - 0.5) - 1;
+                for (int u = firstU; u <= lastU; u++) {
+                    while (span < spans.size() && LineWalls.spanEnd(spans.getLong(span)) < u) {
+                        span++;
+                    }
+                    if (span < spans.size() && LineWalls.spanStart(spans.getLong(span)) <= u) {
+                        continue;
+                    }
+                    consumer.accept(u, v);
+                }
+            }
+        }
+    }
+}
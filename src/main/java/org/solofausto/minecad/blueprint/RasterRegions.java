@@ -0,0 +1,452 @@
+package org.solofausto.minecad.blueprint;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class RasterRegions {
+    private static final int TILE_SHIFT = PlaneBitmap.TILE_SHIFT;
+    private static final int TILE_SIZE = PlaneBitmap.TILE_SIZE;
+    private static final int TILE_MASK = PlaneBitmap.TILE_MASK;
+
+    private final BlueprintOrigin origin;
+    private final long epoch;
+    private final PlaneBitmap walls = new PlaneBitmap();
+    private final PlaneLabels labels = new PlaneLabels();
+    private final Int2ObjectOpenHashMap<Extent> extents = new Int2ObjectOpenHashMap<>();
+    private Int2ObjectOpenHashMap<BitmapRegion> published = new Int2ObjectOpenHashMap<>();
+    private BlueprintRegionMap snapshot = BlueprintRegionMap.EMPTY;
+    private int nextLabel;
+    private int lineCount;
+    private int minU = Integer.MAX_VALUE;
+    private int maxU = Integer.MIN_VALUE;
+    private int minV = Integer.MAX_VALUE;
+    private int maxV = Integer.MIN_VALUE;
+
+    RasterRegions(BlueprintOrigin origin, long epoch) {
+        this.origin = origin;
+        this.epoch = epoch;
+    }
+
+    boolean canExtend(BlueprintOrigin origin, long epoch, int lineCount) {
+        return this.origin.equals(origin) && this.epoch == epoch && this.lineCount <= lineCount;
+    }
+
+    BlueprintRegionMap regions() {
+        return snapshot;
+    }
+
+    void update(List<BlueprintSession.LineBlockCache> lines) {
+        if (lineCount == lines.size()) {
+            return;
+        }
+        if (lineCount == 0) {
+            build(lines);
+        } else {
+            for (int i = lineCount; i < lines.size(); i++) {
+                addLine(lines.get(i));
+            }
+        }
+        lineCount = lines.size();
+        publish();
+    }
+
+    private void publish() {
+        PlaneLabels frozen = labels.freeze();
+        Int2ObjectOpenHashMap<BitmapRegion> regions = new Int2ObjectOpenHashMap<>(extents.size());
+        List<BlueprintRegion> ordered = new ArrayList<>(extents.size());
+        for (Int2ObjectMap.Entry<Extent> entry : extents.int2ObjectEntrySet()) {
+            int label = entry.getIntKey();
+            BitmapRegion region = published.get(label);
+            if (region == null) {
+                region = new BitmapRegion(frozen, label, origin, entry.getValue());
+            } else {
+                region.rebind(frozen);
+            }
+            regions.put(label, region);
+            ordered.add(region);
+        }
+        published = regions;
+        snapshot = ordered.isEmpty()
+                ? BlueprintRegionMap.EMPTY
+                : new BlueprintRegionMap(List.copyOf(ordered), frozen, regions);
+    }
+
+    private void build(List<BlueprintSession.LineBlockCache> lines) {
+        for (BlueprintSession.LineBlockCache line : lines) {
+            PackedBlocks.Cursor cursor = LineRasterizer.rasterize(line.start(), line.end()).cursor();
+            while (cursor.next()) {
+                addWall(PlanePos.planeU(cursor.x(), cursor.y(), cursor.z(), origin),
+                        PlanePos.planeV(cursor.x(), cursor.y(), cursor.z(), origin));
+            }
+        }
+        if (walls.isEmpty()) {
+            return;
+        }
+
+        BitmapFlood flood = newFlood(new PlaneBitmap());
+        PlaneBitmap outside = new PlaneBitmap();
+        for (int u = flood.minU; u <= flood.maxU; u++) {
+            flood.seed(outside, u, flood.minV);
+            flood.seed(outside, u, flood.maxV);
+        }
+        for (int v = flood.minV; v <= flood.maxV; v++) {
+            flood.seed(outside, flood.minU, v);
+            flood.seed(outside, flood.maxU, v);
+        }
+        flood.fill(outside, null);
+
+        for (int tileV = flood.minV >> TILE_SHIFT; tileV <= flood.maxV >> TILE_SHIFT; tileV++) {
+            for (int tileU = flood.minU >> TILE_SHIFT; tileU <= flood.maxU >> TILE_SHIFT; tileU++) {
+                for (int row = 0; row < TILE_SIZE; row++) {
+                    long open;
+                    while ((open = flood.openRow(tileU, tileV, row)) != 0) {
+                        int u = (tileU << TILE_SHIFT) + Long.numberOfTrailingZeros(open);
+                        int v = (tileV << TILE_SHIFT) + row;
+                        PlaneBitmap cells = new PlaneBitmap();
+                        flood.seed(cells, u, v);
+                        flood.fill(cells, null);
+                        addRegion(cells);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addLine(BlueprintSession.LineBlockCache line) {
+        LongArrayList added = new LongArrayList();
+        PackedBlocks.Cursor cursor = LineRasterizer.rasterize(line.start(), line.end()).cursor();
+        while (cursor.next()) {
+            int u = PlanePos.planeU(cursor.x(), cursor.y(), cursor.z(), origin);
+            int v = PlanePos.planeV(cursor.x(), cursor.y(), cursor.z(), origin);
+            if (!walls.get(u, v)) {
+                added.add(PlaneBitmap.cellKey(u, v));
+                addWall(u, v);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+
+        // Adding walls can only split components: regions crossed by the line are re-flooded
+        // inside their old cells, and outside cells next to it may have become enclosed.
+        PlaneBitmap visited = new PlaneBitmap();
+        BitmapFlood flood = newFlood(visited);
+        IntArrayList affected = new IntArrayList();
+        boolean touchesOutside = false;
+        for (int i = 0; i < added.size(); i++) {
+            int u = PlaneBitmap.cellU(added.getLong(i));
+            int v = PlaneBitmap.cellV(added.getLong(i));
+            int label = labels.get(u, v);
+            if (label == 0) {
+                touchesOutside = true;
+                continue;
+            }
+            labels.set(u, v, 0);
+            if (!affected.contains(label)) {
+                affected.add(label);
+            }
+        }
+
+        for (int i = 0; i < affected.size(); i++) {
+            int label = affected.getInt(i);
+            Extent extent = extents.remove(label);
+            labels.forEach(label, extent.minU(), extent.maxU(), extent.minV(), extent.maxV(), (u, v) -> {
+                if (!visited.get(u, v)) {
+                    PlaneBitmap cells = new PlaneBitmap();
+                    flood.seed(cells, u, v);
+                    flood.fill(cells, null);
+                    addRegion(cells);
+                }
+            });
+        }
+
+        if (!touchesOutside) {
+            return;
+        }
+        PlaneBitmap outside = new PlaneBitmap();
+        for (int i = 0; i < added.size(); i++) {
+            int u = PlaneBitmap.cellU(added.getLong(i));
+            int v = PlaneBitmap.cellV(added.getLong(i));
+            floodOutsideNeighbor(flood, outside, u + 1, v);
+            floodOutsideNeighbor(flood, outside, u - 1, v);
+            floodOutsideNeighbor(flood, outside, u, v + 1);
+            floodOutsideNeighbor(flood, outside, u, v - 1);
+        }
+    }
+
+    private void floodOutsideNeighbor(BitmapFlood flood, PlaneBitmap outside, int u, int v) {
+        if (walls.get(u, v) || labels.get(u, v) != 0 || outside.get(u, v)) {
+            return;
+        }
+        PlaneBitmap cells = new PlaneBitmap();
+        flood.seed(cells, u, v);
+        if (flood.fill(cells, outside)) {
+            addRegion(cells);
+        } else {
+            outside.or(cells);
+        }
+    }
+
+    private void addRegion(PlaneBitmap cells) {
+        if (cells.isEmpty()) {
+            return;
+        }
+        int label = ++nextLabel;
+        int[] bounds = { Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, 0 };
+        cells.forEach((u, v) -> {
+            labels.set(u, v, label);
+            bounds[0] = Math.min(bounds[0], u);
+            bounds[1] = Math.max(bounds[1], u);
+            bounds[2] = Math.min(bounds[2], v);
+            bounds[3] = Math.max(bounds[3], v);
+            bounds[4]++;
+        });
+        extents.put(label, new Extent(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4]));
+    }
+
+    private void addWall(int u, int v) {
+        walls.set(u, v);
+        minU = Math.min(minU, u);
+        maxU = Math.max(maxU, u);
+        minV = Math.min(minV, v);
+        maxV = Math.max(maxV, v);
+    }
+
+    private BitmapFlood newFlood(PlaneBitmap visited) {
+        return new BitmapFlood(walls, visited, minU - 1, maxU + 1, minV - 1, maxV + 1);
+    }
+
+    static long spreadRow(long seeds, long open) {
+        return fillUp(seeds, open) | fillDown(seeds, open);
+    }
+
+    private static long fillUp(long gen, long pro) {
+        gen |= pro & (gen << 1);
+        pro &= pro << 1;
+        gen |= pro & (gen << 2);
+        pro &= pro << 2;
+        gen |= pro & (gen << 4);
+        pro &= pro << 4;
+        gen |= pro & (gen << 8);
+        pro &= pro << 8;
+        gen |= pro & (gen << 16);
+        pro &= pro << 16;
+        return gen | (pro & (gen << 32));
+    }
+
+    private static long fillDown(long gen, long pro) {
+        gen |= pro & (gen >>> 1);
+        pro &= pro >>> 1;
+        gen |= pro & (gen >>> 2);
+        pro &= pro >>> 2;
+        gen |= pro & (gen >>> 4);
+        pro &= pro >>> 4;
+        gen |= pro & (gen >>> 8);
+        pro &= pro >>> 8;
+        gen |= pro & (gen >>> 16);
+        pro &= pro >>> 16;
+        return gen | (pro & (gen >>> 32));
+    }
+
+    private static long rangeMask(int low, int high) {
+        if (low > high) {
+            return 0L;
+        }
+        return (-1L >>> (TILE_MASK - high)) & (-1L << low);
+    }
+
+    record Extent(int minU, int maxU, int minV, int maxV, int cellCount) {
+    }
+
+    static final class BitmapFlood {
+        final int minU;
+        final int maxU;
+        final int minV;
+        final int maxV;
+        private final PlaneBitmap walls;
+        private final PlaneBitmap visited;
+        private final LongArrayList pending = new LongArrayList();
+        private final LongOpenHashSet queued = new LongOpenHashSet();
+        private final long[] open = new long[TILE_SIZE];
+        private final long[] neighborOpen = new long[TILE_SIZE];
+        private final long[] carry = new long[TILE_SIZE];
+
+        BitmapFlood(PlaneBitmap walls, PlaneBitmap visited, int minU, int maxU, int minV, int maxV) {
+            this.walls = walls;
+            this.visited = visited;
+            this.minU = minU;
+            this.maxU = maxU;
+            this.minV = minV;
+            this.maxV = maxV;
+        }
+
+        long openRow(int tileU, int tileV, int row) {
+            int v = (tileV << TILE_SHIFT) + row;
+            if (v < minV || v > maxV) {
+                return 0L;
+            }
+            int baseU = tileU << TILE_SHIFT;
+            long mask = rangeMask(Math.max(minU - baseU, 0), Math.min(maxU - baseU, TILE_MASK));
+            if (mask == 0L) {
+                return 0L;
+            }
+            long[] wallTile = walls.tile(tileU, tileV);
+            long[] visitedTile = visited.tile(tileU, tileV);
+            if (wallTile != null) {
+                mask &= ~wallTile[row];
+            }
+            if (visitedTile != null) {
+                mask &= ~visitedTile[row];
+            }
+            return mask;
+        }
+
+        void seed(PlaneBitmap component, int u, int v) {
+            int tileU = u >> TILE_SHIFT;
+            int tileV = v >> TILE_SHIFT;
+            long bit = 1L << (u & TILE_MASK);
+            if ((openRow(tileU, tileV, v & TILE_MASK) & bit) == 0) {
+                return;
+            }
+            long[] tile = component.tileOrCreate(tileU, tileV);
+            if ((tile[v & TILE_MASK] & bit) == 0) {
+                tile[v & TILE_MASK] |= bit;
+                enqueue(tileU, tileV);
+            }
+        }
+
+        boolean fill(PlaneBitmap component, PlaneBitmap knownOutside) {
+            while (!pending.isEmpty()) {
+                long key = pending.removeLong(pending.size() - 1);
+                queued.remove(key);
+                int tileU = PlaneBitmap.tileU(key);
+                int tileV = PlaneBitmap.tileV(key);
+                long[] tile = component.tile(tileU, tileV);
+                for (int row = 0; row < TILE_SIZE; row++) {
+                    open[row] = openRow(tileU, tileV, row);
+                }
+                spread(tile, open);
+                if (knownOutside != null && reachesOutside(tile, tileU, tileV, knownOutside)) {
+                    pending.clear();
+                    queued.clear();
+                    return false;
+                }
+
+                for (int row = 0; row < TILE_SIZE; row++) {
+                    carry[row] = (tile[row] & 1L) << TILE_MASK;
+                }
+                propagate(component, tileU - 1, tileV);
+                for (int row = 0; row < TILE_SIZE; row++) {
+                    carry[row] = tile[row] >>> TILE_MASK;
+                }
+                propagate(component, tileU + 1, tileV);
+                Arrays.fill(carry, 0L);
+                carry[TILE_MASK] = tile[0];
+                propagate(component, tileU, tileV - 1);
+                carry[TILE_MASK] = 0L;
+                carry[0] = tile[TILE_MASK];
+                propagate(component, tileU, tileV + 1);
+            }
+            visited.or(component);
+            return true;
+        }
+
+        private boolean reachesOutside(long[] tile, int tileU, int tileV, PlaneBitmap knownOutside) {
+            long[] outsideTile = knownOutside.tile(tileU, tileV);
+            if (outsideTile != null) {
+                for (int row = 0; row < TILE_SIZE; row++) {
+                    if ((tile[row] & outsideTile[row]) != 0L) {
+                        return true;
+                    }
+                }
+            }
+            int baseU = tileU << TILE_SHIFT;
+            int baseV = tileV << TILE_SHIFT;
+            if (minV >= baseV && minV <= baseV + TILE_MASK && tile[minV - baseV] != 0L) {
+                return true;
+            }
+            if (maxV >= baseV && maxV <= baseV + TILE_MASK && tile[maxV - baseV] != 0L) {
+                return true;
+            }
+            long columns = 0L;
+            for (long row : tile) {
+                columns |= row;
+            }
+            if (minU >= baseU && minU <= baseU + TILE_MASK && (columns & (1L << (minU - baseU))) != 0L) {
+                return true;
+            }
+            return maxU >= baseU && maxU <= baseU + TILE_MASK && (columns & (1L << (maxU - baseU))) != 0L;
+        }
+
+        private void propagate(PlaneBitmap component, int tileU, int tileV) {
+            long[] tile = null;
+            boolean loaded = false;
+            for (int row = 0; row < TILE_SIZE; row++) {
+                if (carry[row] == 0L) {
+                    continue;
+                }
+                if (!loaded) {
+                    tile = component.tile(tileU, tileV);
+                    for (int r = 0; r < TILE_SIZE; r++) {
+                        neighborOpen[r] = openRow(tileU, tileV, r);
+                    }
+                    loaded = true;
+                }
+                long added = carry[row] & neighborOpen[row];
+                if (tile != null) {
+                    added &= ~tile[row];
+                }
+                if (added == 0L) {
+                    continue;
+                }
+                if (tile == null) {
+                    tile = component.tileOrCreate(tileU, tileV);
+                }
+                tile[row] |= added;
+                enqueue(tileU, tileV);
+            }
+        }
+
+        private void enqueue(int tileU, int tileV) {
+            long key = PlaneBitmap.tileKey(tileU, tileV);
+            if (queued.add(key)) {
+                pending.add(key);
+            }
+        }
+
+        private static void spread(long[] tile, long[] open) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int row = 0; row < TILE_SIZE; row++) {
+                    long bits = tile[row];
+                    if (row > 0) {
+                        bits |= tile[row - 1] & open[row];
+                    }
+                    bits = spreadRow(bits, open[row]);
+                    if (bits != tile[row]) {
+                        tile[row] = bits;
+                        changed = true;
+                    }
+                }
+                for (int row = TILE_MASK; row >= 0; row--) {
+                    long bits = tile[row];
+                    if (row < TILE_MASK) {
+                        bits |= tile[row + 1] & open[row];
+                    }
+                    bits = spreadRow(bits, open[row]);
+                    if (bits != tile[row]) {
+                        tile[row] = bits;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -10,8 +10,10 @@ import net.minecraft.util.math.Direction;
 import net.minecraft.world.World;
 import org.solofausto.minecad.blueprint.BlueprintItemData;
 import org.solofausto.minecad.blueprint.BlueprintManager;
+import org.solofausto.minecad.blueprint.BlueprintNetworking;
 import org.solofausto.minecad.blueprint.BlueprintOrigin;
 import org.solofausto.minecad.blueprint.BlueprintSession;
+import org.solofausto.minecad.blueprint.BlueprintStore;
 
 public class BlueprintToolItem extends Item {
     public BlueprintToolItem(Settings settings) {
@@ -21,40 +23,29 @@ public class BlueprintToolItem extends Item {
     @Override
     public ActionResult useOnBlock(ItemUsageContext context) {
         World world = context.getWorld();
-        if (world.isClient()) {
-            PlayerEntity player = context.getPlayer();
-            if (player == null) {
-                return ActionResult.PASS;
-            }
-
-            BlockPos pos = context.getBlockPos();
-            Direction face = context.getSide();
-
-            BlueprintSession session = BlueprintManager.getInstance().getOrCreate(player.getUuid());
-            BlueprintItemData.ensureBlueprintId(context.getStack(), session);
-            if (BlueprintItemData.loadFromItem(context.getStack(), session)) {
-                return ActionResult.SUCCESS;
-            }
-            session.start(new BlueprintOrigin(pos, face));
-            BlueprintItemData.writeToItem(context.getStack(), session);
-            return ActionResult.SUCCESS;
-        }
-
         PlayerEntity player = context.getPlayer();
         if (player == null) {
             return ActionResult.PASS;
         }
+        if (world.isClient()) {
+            return ActionResult.SUCCESS;
+        }
 
         BlockPos pos = context.getBlockPos();
         Direction face = context.getSide();
 
-        BlueprintSession session = BlueprintManager.getInstance().getOrCreate(player.getUuid());
+        BlueprintSession session = BlueprintManager.of(world).getOrCreate(player.getUuid());
+        BlueprintStore store = BlueprintStore.get(world.getServer());
         BlueprintItemData.ensureBlueprintId(context.getStack(), session);
-        if (BlueprintItemData.loadFromItem(context.getStack(), session)) {
+        if (BlueprintItemData.loadFromItem(context.getStack(), session, store)) {
             return ActionResult.CONSUME;
         }
+        if (BlueprintItemData.reissueIfMissing(context.getStack(), session, store)) {
+            player.sendMessage(Text.literal("Blueprint data for this item was not found, starting a new one."),
+                    false);
+        }
         session.start(new BlueprintOrigin(pos, face));
-        BlueprintItemData.writeToItem(context.getStack(), session);
+        BlueprintNetworking.sync(player, BlueprintItemData.writeToItem(context.getStack(), session, store));
 
         player.sendMessage(Text.literal("Blueprint started at " + pos + " facing " + face), true);
         return ActionResult.CONSUME;